@@ -106,6 +106,19 @@ public abstract class BytecodeSwitch {
      */
     public abstract int keyAt(int i);
 
+    /**
+     * Decodes the keys of this switch into an array. The keys are in increasing order, as required by the
+     * JVM specification.
+     * @return the keys of this switch, indexed by switch target index
+     */
+    public int[] keys() {
+        final int[] keys = new int[numberOfCases()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = keyAt(i);
+        }
+        return keys;
+    }
+
     /**
      * Gets the offset from the start of the switch instruction for the {@code i}'th switch target.
      * @param i the switch target index
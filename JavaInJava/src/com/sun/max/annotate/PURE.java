@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.annotate;
+
+import java.lang.annotation.*;
+
+/**
+ * Denotes a method without side effects whose result depends only on its arguments and on the state of the heap. It
+ * must not write to any field or array element, enter a monitor or return a newly allocated mutable object. The
+ * {@linkplain com.sun.max.tele.interpreter.TeleInterpreter interpreter} may memoize calls to such a method while the
+ * VM it inspects remains paused.
+ * <p>
+ * The annotation is a contract for overriding methods as well: an annotated virtual or interface method is treated as
+ * pure regardless of the implementation selected at a call site.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface PURE {
+}
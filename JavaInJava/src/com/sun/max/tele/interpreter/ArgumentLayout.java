@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import java.util.concurrent.*;
+
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.type.*;
+
+/**
+ * Describes how the arguments of a method, including the receiver of a non-static method, occupy operand stack
+ * slots when the method is invoked.
+ */
+final class ArgumentLayout {
+
+    /**
+     * The kind of each argument. The receiver of a non-static method is at index 0.
+     */
+    final Kind[] kinds;
+
+    /**
+     * The number of stack slots occupied by the arguments.
+     */
+    final int slots;
+
+    private static final ConcurrentMap<MethodActor, ArgumentLayout> cache = new ConcurrentHashMap<MethodActor, ArgumentLayout>();
+
+    static ArgumentLayout of(MethodActor method) {
+        ArgumentLayout layout = cache.get(method);
+        if (layout == null) {
+            layout = new ArgumentLayout(method);
+            cache.put(method, layout);
+        }
+        return layout;
+    }
+
+    private ArgumentLayout(MethodActor method) {
+        if (method.isStatic()) {
+            kinds = method.descriptor().copyParameterKinds(null, 0);
+        } else {
+            kinds = method.descriptor().copyParameterKinds(null, 1);
+            kinds[0] = Kind.REFERENCE;
+        }
+        int slots = 0;
+        for (Kind kind : kinds) {
+            slots += (kind == Kind.LONG || kind == Kind.DOUBLE) ? 2 : 1;
+        }
+        this.slots = slots;
+    }
+}
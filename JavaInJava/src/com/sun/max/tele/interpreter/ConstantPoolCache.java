@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import java.util.concurrent.*;
+
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.classfile.constant.*;
+import com.sun.max.vm.type.*;
+
+/**
+ * A side table of the field, method and class references in a {@link ConstantPool} that have been resolved by the
+ * interpreter, indexed by constant pool index. Resolving a constant pool entry is only done the first time an
+ * instruction referring to it is executed; thereafter the entry is a single array load.
+ * <p>
+ * A cache is shared by all interpreter instances executing code that uses its constant pool. The cached entries are
+ * either actors or immutable objects whose fields are final, so they can be published without synchronization:
+ * threads racing to resolve the same entry store equivalent results. A resolution that fails is not cached so that
+ * the error is raised again the next time the entry is used.
+ */
+final class ConstantPoolCache {
+
+    /**
+     * A resolved field reference along with the details needed to access the field.
+     */
+    static final class ResolvedField {
+        final FieldActor fieldActor;
+        final Kind kind;
+        final int offset;
+
+        private ResolvedField(FieldActor fieldActor) {
+            this.fieldActor = fieldActor;
+            this.kind = fieldActor.kind;
+            this.offset = fieldActor.offset();
+        }
+    }
+
+    private static final ConcurrentMap<ConstantPool, ConstantPoolCache> caches = new ConcurrentHashMap<ConstantPool, ConstantPoolCache>();
+
+    /**
+     * Gets the cache for a given constant pool, creating it if necessary.
+     */
+    static ConstantPoolCache of(ConstantPool constantPool) {
+        ConstantPoolCache cache = caches.get(constantPool);
+        if (cache == null) {
+            final ConstantPoolCache newCache = new ConstantPoolCache(constantPool);
+            cache = caches.putIfAbsent(constantPool, newCache);
+            if (cache == null) {
+                cache = newCache;
+            }
+        }
+        return cache;
+    }
+
+    private final ConstantPool constantPool;
+    private final Object[] entries;
+
+    private ConstantPoolCache(ConstantPool constantPool) {
+        this.constantPool = constantPool;
+        this.entries = new Object[constantPool.numberOfConstants()];
+    }
+
+    /**
+     * Gets the resolved field referred to by the constant pool entry at a given index, resolving it if necessary.
+     */
+    ResolvedField field(int cpIndex) {
+        ResolvedField field = (ResolvedField) entries[cpIndex];
+        if (field == null) {
+            field = new ResolvedField(constantPool.fieldAt(cpIndex).resolve(constantPool, cpIndex));
+            entries[cpIndex] = field;
+        }
+        return field;
+    }
+
+    /**
+     * Gets the method referred to by the constant pool entry at a given index, resolving it if necessary.
+     */
+    MethodActor method(int cpIndex) {
+        MethodActor method = (MethodActor) entries[cpIndex];
+        if (method == null) {
+            method = constantPool.methodAt(cpIndex).resolve(constantPool, cpIndex);
+            entries[cpIndex] = method;
+        }
+        return method;
+    }
+
+    /**
+     * Gets the class referred to by the constant pool entry at a given index, resolving it if necessary.
+     */
+    ClassActor classActor(int cpIndex) {
+        ClassActor classActor = (ClassActor) entries[cpIndex];
+        if (classActor == null) {
+            classActor = constantPool.classAt(cpIndex).resolve(constantPool, cpIndex);
+            entries[cpIndex] = classActor;
+        }
+        return classActor;
+    }
+}
@@ -0,0 +1,468 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import static com.sun.cri.bytecode.Bytecodes.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.sun.cri.bytecode.*;
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.classfile.*;
+
+/**
+ * The bytecode of a method decoded once into a form the interpreter can execute without re-reading the class file
+ * encoding. Each instruction occupies one index in a set of parallel arrays, {@link Bytecodes#WIDE} prefixes are folded
+ * into the instruction they modify, operands are unpacked and the targets of branches and switches are resolved to
+ * instruction indexes.
+ * <p>
+ * Decoded code is cached per method so that it is shared by all interpreter instances. Apart from the
+ * {@linkplain #inlineCaches inline caches} of its call sites, the state of the {@linkplain HostedTier hosted tier} and
+ * the {@linkplain #recordSequence(int) fusion} of frequently executed sequences, it is immutable.
+ * <p>
+ * A fused sequence behaves exactly like the instructions it replaces, so an interpreter that has not yet seen a
+ * fusion made by another thread still executes the code correctly.
+ */
+final class DecodedCode {
+
+    /**
+     * The code attribute from which this object was decoded.
+     */
+    final CodeAttribute codeAttribute;
+
+    /**
+     * The resolved entries of the constant pool used by this code.
+     */
+    final ConstantPoolCache constantPoolCache;
+
+    /**
+     * The opcode of each instruction. This is never {@link Bytecodes#WIDE}. The first instruction of a sequence that
+     * has been fused has the opcode of the {@linkplain Superinstructions superinstruction} replacing the sequence.
+     */
+    final int[] opcodes;
+
+    /**
+     * The first operand of each instruction. This is a local variable index, a constant pool index, an immediate
+     * constant or the index of a branch target instruction, depending on the opcode. The local variable index of the
+     * short forms of {@code iload} and {@code aload} and the value pushed by an {@code iconst} are also recorded here
+     * for the benefit of {@linkplain Superinstructions superinstructions}.
+     */
+    final int[] operands;
+
+    /**
+     * The second operand of each instruction. This is the increment of an {@link Bytecodes#IINC}, the dimensions of a
+     * {@link Bytecodes#MULTIANEWARRAY} or the return address of a {@link Bytecodes#JSR}.
+     */
+    final int[] operands2;
+
+    /**
+     * The bytecode index of each instruction.
+     */
+    final int[] bcis;
+
+    /**
+     * The decoded table of each {@link Bytecodes#TABLESWITCH} and {@link Bytecodes#LOOKUPSWITCH} instruction.
+     */
+    final Switch[] switches;
+
+    /**
+     * The inline cache of each {@link Bytecodes#INVOKEVIRTUAL} and {@link Bytecodes#INVOKEINTERFACE} instruction.
+     */
+    final InlineCache[] inlineCaches;
+
+    /**
+     * The entries of the exception handler table with their ranges and entry points translated to instruction indexes,
+     * in the order in which they are searched.
+     */
+    final ExceptionHandler[] exceptionHandlers;
+
+    /**
+     * The superinstruction that is to replace the fusible sequence starting at each instruction, or 0 if no sequence
+     * starts there. This is {@code null} if no sequence remains to be fused.
+     */
+    private final int[] fusions;
+
+    /**
+     * The number of times the fusible sequence starting at each instruction has been executed.
+     */
+    private final AtomicIntegerArray sequenceCounts;
+
+    /**
+     * The number of times the method has been invoked by an interpreter running without a remote VM, counted until
+     * the {@linkplain HostedTier hosted tier} decides whether to take over the method.
+     */
+    int invocations;
+
+    /**
+     * Determines if the method is executed by the {@linkplain HostedTier host VM} instead of being interpreted.
+     */
+    boolean isHosted;
+
+    /**
+     * Determines if the method must always be interpreted, even when running without a remote VM.
+     */
+    boolean isNotHostable;
+
+    /**
+     * Map from a bytecode index to the index of the instruction starting at that position or -1 if no instruction
+     * starts there.
+     */
+    private final int[] bciToIndex;
+
+    private static final ConcurrentMap<ClassMethodActor, DecodedCode> cache = new ConcurrentHashMap<ClassMethodActor, DecodedCode>();
+
+    /**
+     * Gets the decoded code for a given method, decoding it if this has not yet been done for the method's current
+     * {@linkplain ClassMethodActor#codeAttribute() code}.
+     */
+    static DecodedCode of(ClassMethodActor method) {
+        final CodeAttribute codeAttribute = method.codeAttribute();
+        DecodedCode decodedCode = cache.get(method);
+        if (decodedCode == null || decodedCode.codeAttribute != codeAttribute) {
+            // Racing threads may decode the same method; the results are equivalent so the last one wins.
+            decodedCode = new DecodedCode(codeAttribute);
+            cache.put(method, decodedCode);
+        }
+        return decodedCode;
+    }
+
+    private DecodedCode(CodeAttribute codeAttribute) {
+        this.codeAttribute = codeAttribute;
+        this.constantPoolCache = ConstantPoolCache.of(codeAttribute.constantPool);
+        final byte[] code = codeAttribute.code();
+        final int[] opcodes = new int[code.length];
+        final int[] operands = new int[code.length];
+        final int[] operands2 = new int[code.length];
+        final int[] bcis = new int[code.length];
+        bciToIndex = new int[code.length];
+        Arrays.fill(bciToIndex, -1);
+
+        final BytecodeStream stream = new BytecodeStream(code);
+        int length = 0;
+        while (stream.currentBC() != END) {
+            final int bci = stream.currentBCI();
+            final int opcode = stream.currentBC();
+            bciToIndex[bci] = length;
+            bcis[length] = bci;
+            opcodes[length] = opcode;
+            switch (opcode) {
+                case ICONST_M1:
+                case ICONST_0:
+                case ICONST_1:
+                case ICONST_2:
+                case ICONST_3:
+                case ICONST_4:
+                case ICONST_5:
+                    operands[length] = opcode - ICONST_0;
+                    break;
+                case ILOAD_0:
+                case ILOAD_1:
+                case ILOAD_2:
+                case ILOAD_3:
+                    operands[length] = opcode - ILOAD_0;
+                    break;
+                case ALOAD_0:
+                case ALOAD_1:
+                case ALOAD_2:
+                case ALOAD_3:
+                    operands[length] = opcode - ALOAD_0;
+                    break;
+                case BIPUSH:
+                    operands[length] = stream.readByte();
+                    break;
+                case SIPUSH:
+                    operands[length] = stream.readShort();
+                    break;
+                case LDC:
+                case LDC_W:
+                case LDC2_W:
+                case GETSTATIC:
+                case PUTSTATIC:
+                case GETFIELD:
+                case PUTFIELD:
+                case INVOKEVIRTUAL:
+                case INVOKESPECIAL:
+                case INVOKESTATIC:
+                case INVOKEINTERFACE:
+                case NEW:
+                case ANEWARRAY:
+                case CHECKCAST:
+                case INSTANCEOF:
+                    operands[length] = stream.readCPI();
+                    break;
+                case ILOAD:
+                case LLOAD:
+                case FLOAD:
+                case DLOAD:
+                case ALOAD:
+                case WLOAD:
+                case ISTORE:
+                case LSTORE:
+                case FSTORE:
+                case DSTORE:
+                case ASTORE:
+                case RET:
+                    operands[length] = stream.readLocalIndex();
+                    break;
+                case IINC:
+                    operands[length] = stream.readLocalIndex();
+                    operands2[length] = stream.readIncrement();
+                    break;
+                case GOTO_W:
+                case JSR_W:
+                    operands[length] = stream.readFarBranchDest();
+                    operands2[length] = stream.nextBCI();
+                    break;
+                case NEWARRAY:
+                    operands[length] = stream.readUByte(bci + 1);
+                    break;
+                case MULTIANEWARRAY:
+                    operands[length] = stream.readCPI();
+                    operands2[length] = stream.readUByte(bci + 3);
+                    break;
+                default:
+                    if (isBranch(opcode)) {
+                        operands[length] = stream.readBranchDest();
+                        operands2[length] = stream.nextBCI();
+                    }
+                    break;
+            }
+            length++;
+            stream.next();
+        }
+
+        this.opcodes = Arrays.copyOf(opcodes, length);
+        this.operands = Arrays.copyOf(operands, length);
+        this.operands2 = Arrays.copyOf(operands2, length);
+        this.bcis = Arrays.copyOf(bcis, length);
+        this.switches = new Switch[length];
+        this.inlineCaches = new InlineCache[length];
+
+        // Now that all instruction indexes are known, resolve branch and switch targets
+        for (int i = 0; i < length; i++) {
+            final int opcode = opcodes[i];
+            if (isBranch(opcode)) {
+                this.operands[i] = indexOf(this.operands[i]);
+            } else if (opcode == TABLESWITCH) {
+                switches[i] = new Switch(this, new BytecodeTableSwitch(code, bcis[i]));
+            } else if (opcode == LOOKUPSWITCH) {
+                switches[i] = new Switch(this, new BytecodeLookupSwitch(code, bcis[i]));
+            } else if (opcode == INVOKEVIRTUAL || opcode == INVOKEINTERFACE) {
+                inlineCaches[i] = new InlineCache();
+            }
+        }
+
+        final ExceptionHandlerEntry[] handlerTable = codeAttribute.exceptionHandlerTable();
+        exceptionHandlers = new ExceptionHandler[handlerTable.length];
+        for (int i = 0; i < handlerTable.length; i++) {
+            exceptionHandlers[i] = new ExceptionHandler(this, handlerTable[i]);
+        }
+
+        final int[] fusions = Superinstructions.fusible(this.opcodes, leaders());
+        if (fusions != null && Superinstructions.FUSE_THRESHOLD == 0) {
+            for (int i = 0; i < length; i++) {
+                if (fusions[i] != 0) {
+                    this.opcodes[i] = fusions[i];
+                }
+            }
+            this.fusions = null;
+            this.sequenceCounts = null;
+        } else {
+            this.fusions = fusions;
+            this.sequenceCounts = fusions == null ? null : new AtomicIntegerArray(length);
+        }
+    }
+
+    /**
+     * Records an execution of the instruction at a given index. If the instruction starts a fusible sequence that has
+     * now been executed {@link Superinstructions#FUSE_THRESHOLD} times, the sequence is fused.
+     */
+    void recordSequence(int index) {
+        if (fusions != null && fusions[index] != 0 && sequenceCounts.incrementAndGet(index) == Superinstructions.FUSE_THRESHOLD) {
+            opcodes[index] = fusions[index];
+        }
+    }
+
+    /**
+     * Determines which instructions are the target of a control transfer other than by falling through from the
+     * preceding instruction.
+     */
+    private boolean[] leaders() {
+        final int length = opcodes.length;
+        // The extra element absorbs invalid targets which indexOf maps to one past the last instruction
+        final boolean[] isLeader = new boolean[length + 1];
+        for (int i = 0; i < length; i++) {
+            final int opcode = opcodes[i];
+            if (isBranch(opcode)) {
+                isLeader[operands[i]] = true;
+                if (opcode == JSR || opcode == JSR_W) {
+                    isLeader[indexOf(operands2[i])] = true;
+                }
+            } else if (switches[i] != null) {
+                final Switch switchTable = switches[i];
+                isLeader[switchTable.defaultTarget] = true;
+                for (int target : switchTable.targets) {
+                    isLeader[target] = true;
+                }
+            }
+        }
+        for (ExceptionHandler handler : exceptionHandlers) {
+            isLeader[handler.handlerIndex] = true;
+        }
+        return isLeader;
+    }
+
+    /**
+     * Gets the number of instructions in this code.
+     */
+    int length() {
+        return opcodes.length;
+    }
+
+    /**
+     * Gets the index of the instruction starting at a given bytecode index. If no instruction starts at {@code bci},
+     * then an index one past the last instruction is returned so that transferring control there fails in the same
+     * way as running off the end of the code.
+     */
+    int indexOf(int bci) {
+        if (bci >= 0 && bci < bciToIndex.length) {
+            final int index = bciToIndex[bci];
+            if (index >= 0) {
+                return index;
+            }
+        }
+        return opcodes.length;
+    }
+
+    /**
+     * An entry of the exception handler table with its bytecode positions translated to instruction indexes.
+     */
+    static final class ExceptionHandler {
+
+        /**
+         * The index of the first instruction covered by the handler.
+         */
+        final int startIndex;
+
+        /**
+         * The index of the instruction after the last one covered by the handler.
+         */
+        final int endIndex;
+
+        /**
+         * The index of the first instruction of the handler.
+         */
+        final int handlerIndex;
+
+        /**
+         * The constant pool index of the type of exception caught or 0 if all exceptions are caught. The type is
+         * resolved through the {@linkplain DecodedCode#constantPoolCache constant pool cache} the first time it is
+         * needed.
+         */
+        final int catchTypeIndex;
+
+        ExceptionHandler(DecodedCode decodedCode, ExceptionHandlerEntry entry) {
+            startIndex = decodedCode.indexOf(entry.startPosition());
+            endIndex = decodedCode.indexOf(entry.endPosition());
+            handlerIndex = decodedCode.indexOf(entry.handlerPosition());
+            catchTypeIndex = entry.catchTypeIndex();
+        }
+    }
+
+    /**
+     * The decoded form of a {@link Bytecodes#TABLESWITCH} or {@link Bytecodes#LOOKUPSWITCH} with its targets
+     * resolved to instruction indexes. A lookup switch whose keys are dense is decoded as a jump table, so that both
+     * kinds of switch dispatch in constant time; a sparse lookup switch dispatches with a binary search of its keys.
+     */
+    static final class Switch {
+
+        /**
+         * A lookup switch is decoded as a jump table if its key range has at most this many entries per key.
+         */
+        private static final int MAX_TABLE_ENTRIES_PER_KEY = 2;
+
+        /**
+         * The sorted keys matched by the switch or {@code null} if the switch is decoded as a jump table for the keys
+         * {@code [lowKey .. highKey]}.
+         */
+        private final int[] keys;
+        private final int lowKey;
+        private final int highKey;
+
+        /**
+         * The target for each key in {@link #keys} or, for a jump table, for each key in {@code [lowKey .. highKey]}.
+         */
+        private final int[] targets;
+        private final int defaultTarget;
+
+        Switch(DecodedCode decodedCode, BytecodeSwitch bytecodeSwitch) {
+            final int numberOfCases = bytecodeSwitch.numberOfCases();
+            defaultTarget = decodedCode.indexOf(bytecodeSwitch.defaultTarget());
+            if (bytecodeSwitch instanceof BytecodeTableSwitch) {
+                keys = null;
+                lowKey = ((BytecodeTableSwitch) bytecodeSwitch).lowKey();
+                highKey = ((BytecodeTableSwitch) bytecodeSwitch).highKey();
+                targets = new int[numberOfCases];
+                for (int i = 0; i < numberOfCases; i++) {
+                    targets[i] = decodedCode.indexOf(bytecodeSwitch.targetAt(i));
+                }
+                return;
+            }
+
+            final int[] caseKeys = bytecodeSwitch.keys();
+            final int[] caseTargets = new int[numberOfCases];
+            for (int i = 0; i < numberOfCases; i++) {
+                caseTargets[i] = decodedCode.indexOf(bytecodeSwitch.targetAt(i));
+            }
+            if (numberOfCases != 0 && (long) caseKeys[numberOfCases - 1] - caseKeys[0] < (long) numberOfCases * MAX_TABLE_ENTRIES_PER_KEY) {
+                keys = null;
+                lowKey = caseKeys[0];
+                highKey = caseKeys[numberOfCases - 1];
+                targets = new int[highKey - lowKey + 1];
+                Arrays.fill(targets, defaultTarget);
+                for (int i = 0; i < numberOfCases; i++) {
+                    targets[caseKeys[i] - lowKey] = caseTargets[i];
+                }
+            } else {
+                keys = caseKeys;
+                lowKey = 0;
+                highKey = -1;
+                targets = caseTargets;
+            }
+        }
+
+        /**
+         * Gets the index of the instruction to which this switch transfers control for a given key.
+         */
+        int targetFor(int key) {
+            if (keys == null) {
+                if (key < lowKey || key > highKey) {
+                    return defaultTarget;
+                }
+                return targets[key - lowKey];
+            }
+            final int i = Arrays.binarySearch(keys, key);
+            return i < 0 ? defaultTarget : targets[i];
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.value.*;
+
+/**
+ * The execution of a method by the interpreter in one of several {@linkplain ExecutionThread threads} that are
+ * {@linkplain TeleInterpreter#execute(com.sun.max.tele.TeleVM, Evaluation...) interleaved} on a single machine, or as
+ * one element of a {@linkplain TeleInterpreterPool#executeBatch(ClassMethodActor, java.util.List, int) batch}.
+ */
+public final class Evaluation {
+
+    final ClassMethodActor method;
+    final Value[] arguments;
+    private boolean isDone;
+    private Value result;
+    private TeleInterpreterException exception;
+
+    /**
+     * Creates an evaluation of a given method with the given arguments.
+     * Note that arguments must be dynamic types seen by the JavaPrototyper as legitimate VM classes.
+     */
+    public Evaluation(ClassMethodActor method, Value... arguments) {
+        this.method = method;
+        this.arguments = arguments;
+    }
+
+    public ClassMethodActor method() {
+        return method;
+    }
+
+    /**
+     * Determines if the method has returned or completed abruptly.
+     */
+    public boolean isDone() {
+        return isDone;
+    }
+
+    /**
+     * Gets the value returned by the method.
+     *
+     * @throws TeleInterpreterException if an uncaught exception occurred during execution of the method
+     */
+    public Value result() throws TeleInterpreterException {
+        assert isDone : "evaluation of " + method + " is not complete";
+        if (exception != null) {
+            throw exception;
+        }
+        return result;
+    }
+
+    void complete(Value result) {
+        this.result = result;
+        this.isDone = true;
+    }
+
+    void fail(TeleInterpreterException exception) {
+        this.exception = exception;
+        this.isDone = true;
+    }
+}
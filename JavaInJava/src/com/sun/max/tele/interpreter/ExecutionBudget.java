@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import java.util.concurrent.*;
+
+/**
+ * Limits on the resources an interpreter run may consume before it is stopped. The limits are only checked at backward
+ * branches, method entries and allocations so that a run costs nothing extra between these points. A stopped run
+ * raises an {@link ExecutionInterruptedException} from which it can be {@linkplain ExecutionInterruptedException#resume
+ * resumed}.
+ * <p>
+ * The number of instructions executed is estimated without counting every instruction: each backward branch is
+ * charged with the distance back to its target, which is the length of a loop without internal branches, and each
+ * method entry is charged with one instruction.
+ * <p>
+ * A budget can be {@linkplain #cancel() cancelled} by any thread. Apart from that, it must only be used by one run at
+ * a time.
+ */
+public final class ExecutionBudget {
+
+    /**
+     * The value of a limit that is not enforced.
+     */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    /**
+     * The resources that can be exhausted, stopping a run.
+     */
+    public static enum Limit {
+        INSTRUCTIONS("instruction limit exceeded"),
+        TIME("time limit exceeded"),
+        ALLOCATION("allocation limit exceeded"),
+        CANCELLED("cancelled");
+
+        final String description;
+
+        private Limit(String description) {
+            this.description = description;
+        }
+    }
+
+    /**
+     * The unchecked exception with which the interpreter unwinds to its main loop when a budget is exhausted. It is
+     * never dispatched to exception handlers in interpreted code.
+     */
+    static final class Exhausted extends RuntimeException {
+
+        final Limit limit;
+
+        Exhausted(Limit limit) {
+            super(limit.description);
+            this.limit = limit;
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * The number of checks between reads of the clock.
+     */
+    private static final int CLOCK_INTERVAL = 256;
+
+    private final long maxInstructions;
+    private final long maxNanos;
+    private final long maxAllocatedBytes;
+    private long instructions;
+    private long allocatedBytes;
+    private long deadline;
+    private int checksUntilClock;
+    private volatile boolean isCancelled;
+
+    /**
+     * Creates a budget with the given limits, any of which can be {@link #UNLIMITED}.
+     *
+     * @param maxInstructions the (estimated) number of instructions a run may execute
+     * @param maxMillis the time a run may take, measured from when it starts or is resumed
+     * @param maxAllocatedBytes the number of bytes a run may allocate
+     */
+    public ExecutionBudget(long maxInstructions, long maxMillis, long maxAllocatedBytes) {
+        this.maxInstructions = maxInstructions;
+        this.maxNanos = maxMillis == UNLIMITED ? UNLIMITED : TimeUnit.MILLISECONDS.toNanos(maxMillis);
+        this.maxAllocatedBytes = maxAllocatedBytes;
+    }
+
+    /**
+     * Stops the run using this budget at its next check. This can be called from any thread.
+     */
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * Gets the estimated number of instructions charged to this budget.
+     */
+    public long instructions() {
+        return instructions;
+    }
+
+    /**
+     * Gets the number of bytes allocated by the runs charged to this budget.
+     */
+    public long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Starts the clock for a run that starts or resumes with this budget.
+     */
+    void start() {
+        deadline = maxNanos == UNLIMITED ? 0 : System.nanoTime() + maxNanos;
+        checksUntilClock = 0;
+    }
+
+    /**
+     * Charges a number of executed instructions to this budget.
+     *
+     * @throws Exhausted if this budget is exhausted or has been cancelled
+     */
+    void chargeInstructions(int count) {
+        instructions += count;
+        if (instructions > maxInstructions) {
+            throw new Exhausted(Limit.INSTRUCTIONS);
+        }
+        check();
+    }
+
+    /**
+     * Charges an allocation to this budget.
+     *
+     * @throws Exhausted if this budget is exhausted or has been cancelled
+     */
+    void chargeAllocation(long size) {
+        allocatedBytes = size > Long.MAX_VALUE - allocatedBytes ? Long.MAX_VALUE : allocatedBytes + size;
+        if (allocatedBytes > maxAllocatedBytes) {
+            throw new Exhausted(Limit.ALLOCATION);
+        }
+        check();
+    }
+
+    private void check() {
+        if (isCancelled) {
+            throw new Exhausted(Limit.CANCELLED);
+        }
+        if (deadline != 0 && --checksUntilClock < 0) {
+            checksUntilClock = CLOCK_INTERVAL;
+            if (System.nanoTime() - deadline > 0) {
+                throw new Exhausted(Limit.TIME);
+            }
+        }
+    }
+}
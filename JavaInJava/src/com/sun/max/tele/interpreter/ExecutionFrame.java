@@ -20,39 +20,84 @@
  */
 package com.sun.max.tele.interpreter;
 
-import java.util.*;
-
 import com.sun.max.vm.actor.holder.*;
 import com.sun.max.vm.actor.member.*;
-import com.sun.max.vm.classfile.*;
 import com.sun.max.vm.classfile.constant.*;
+import com.sun.max.vm.type.*;
 import com.sun.max.vm.value.*;
 
 /**
  * Instances of this class represent individual execution frame entries on a given ExecutionThread's execution stack.
+ * <p>
+ * The local variables and operand stack of a frame are laid out as in the JVM specification: a {@code long} or
+ * {@code double} occupies two slots and all other values occupy one slot. Each slot is represented by an element in a
+ * {@code long} array holding primitive values and an element in a parallel {@link Value} array holding references and
+ * words. The typed push and pop operations access only the array appropriate to their kind so that executing primitive
+ * bytecodes neither allocates nor synchronizes.
+ * <p>
+ * The slot arrays are shared by all the frames of a {@linkplain ExecutionThread thread}, each frame occupying a
+ * window of them as in the stack of a real JVM. A frame's locals start at its {@linkplain #localBase base} and its
+ * operand stack grows upwards from {@code localBase + maxLocals}. The window of a callee starts at the arguments on
+ * its caller's operand stack so that they become the callee's first locals without being copied. A thread keeps the
+ * frame object for each depth it has reached and {@linkplain #enter reuses} it for each method invoked at that depth.
  *
  * @author Athul Acharya
  */
 class ExecutionFrame {
 
-    private final ClassMethodActor method;
-    private int currentOpcodePosition;
-    private int currentBytePosition;
-    private final Value[] locals;
-    private final Stack<Value> operands;
+    private ClassMethodActor method;
+    private int currentIndex;
+    private int nextIndex;
+    private long[] primitives;
+    private Value[] references;
+    private int localBase;
+    private int stackBase;
+    private int stackPointer;
     private final ExecutionFrame callersFrame;
-    private final byte[] code;
+    private DecodedCode code;
     private final int depth;
 
-    public ExecutionFrame(ExecutionFrame callersFrame, ClassMethodActor method) {
-        this.method = method;
-        this.locals = new Value[method.codeAttribute().maxLocals];
-        this.operands = new Stack<Value>();
+    /**
+     * The object whose monitor was acquired on entry to this frame's method if it is synchronized.
+     */
+    Object monitor;
+
+    /**
+     * Creates the frame used by a thread for the methods it invokes from a given frame.
+     */
+    ExecutionFrame(ExecutionFrame callersFrame) {
         this.callersFrame = callersFrame;
-        this.code = method.codeAttribute().code();
         this.depth = callersFrame == null ? 1 : callersFrame.depth + 1;
     }
 
+    /**
+     * Initializes this frame for an invocation of a given method.
+     *
+     * @param primitives the primitive slots of this frame's thread
+     * @param references the reference slots of this frame's thread
+     * @param localBase the index of the slot holding this frame's first local variable
+     */
+    void enter(ClassMethodActor method, long[] primitives, Value[] references, int localBase) {
+        this.method = method;
+        this.code = DecodedCode.of(method);
+        this.primitives = primitives;
+        this.references = references;
+        this.localBase = localBase;
+        this.stackBase = localBase + method.codeAttribute().maxLocals;
+        this.stackPointer = stackBase;
+        this.currentIndex = 0;
+        this.nextIndex = 0;
+        this.monitor = null;
+    }
+
+    /**
+     * Updates this frame after its thread has moved its slots to larger arrays.
+     */
+    void relocate(long[] primitives, Value[] references) {
+        this.primitives = primitives;
+        this.references = references;
+    }
+
     /**
      * Computes the number of frames on the call stack up to and including this frame.
      */
@@ -64,114 +109,434 @@ class ExecutionFrame {
         return callersFrame;
     }
 
+    /**
+     * Stores a value in a local variable, converting it to the representation used for its kind.
+     */
     public void setLocal(int index, Value value) {
-        locals[index] = value;
+        switch (value.kind().stackKind.asEnum) {
+            case INT:
+                primitives[localBase + index] = value.toInt();
+                break;
+            case FLOAT:
+                primitives[localBase + index] = Float.floatToRawIntBits(value.toFloat());
+                break;
+            case LONG:
+                primitives[localBase + index] = value.toLong();
+                break;
+            case DOUBLE:
+                primitives[localBase + index] = Double.doubleToRawLongBits(value.toDouble());
+                break;
+            default:
+                references[localBase + index] = value;
+                break;
+        }
     }
 
-    public int readOpcode() {
-        currentOpcodePosition = currentBytePosition;
-        return readByte() & 0xff;
+    public int getIntLocal(int index) {
+        return (int) primitives[localBase + index];
+    }
+
+    public void setIntLocal(int index, int value) {
+        primitives[localBase + index] = value;
+    }
+
+    public long getLongLocal(int index) {
+        return primitives[localBase + index];
+    }
+
+    public void setLongLocal(int index, long value) {
+        primitives[localBase + index] = value;
+    }
+
+    public float getFloatLocal(int index) {
+        return Float.intBitsToFloat((int) primitives[localBase + index]);
+    }
+
+    public void setFloatLocal(int index, float value) {
+        primitives[localBase + index] = Float.floatToRawIntBits(value);
+    }
+
+    public double getDoubleLocal(int index) {
+        return Double.longBitsToDouble(primitives[localBase + index]);
+    }
+
+    public void setDoubleLocal(int index, double value) {
+        primitives[localBase + index] = Double.doubleToRawLongBits(value);
+    }
+
+    /**
+     * Gets the reference or word value in a local variable.
+     */
+    public Value getReferenceLocal(int index) {
+        return references[localBase + index];
+    }
+
+    /**
+     * Pushes the untyped contents of a local variable slot. This is used for the reference loads which must also be
+     * able to move a {@code returnAddress}.
+     */
+    public void loadSlot(int index) {
+        primitives[stackPointer] = primitives[localBase + index];
+        references[stackPointer] = references[localBase + index];
+        stackPointer++;
+    }
+
+    /**
+     * Pops the untyped contents of the top operand stack slot into a local variable slot.
+     */
+    public void storeSlot(int index) {
+        stackPointer--;
+        primitives[localBase + index] = primitives[stackPointer];
+        references[localBase + index] = references[stackPointer];
+    }
+
+    public void pushInt(int value) {
+        primitives[stackPointer++] = value;
+    }
+
+    public int popInt() {
+        return (int) primitives[--stackPointer];
+    }
+
+    /**
+     * Gets the int value in the operand stack slot that is {@code depth} slots below the top slot.
+     */
+    public int peekInt(int depth) {
+        return (int) primitives[stackPointer - 1 - depth];
+    }
+
+    public void pushFloat(float value) {
+        primitives[stackPointer++] = Float.floatToRawIntBits(value);
+    }
+
+    public float popFloat() {
+        return Float.intBitsToFloat((int) primitives[--stackPointer]);
+    }
+
+    public void pushLong(long value) {
+        primitives[stackPointer] = value;
+        stackPointer += 2;
+    }
+
+    public long popLong() {
+        stackPointer -= 2;
+        return primitives[stackPointer];
+    }
+
+    public void pushDouble(double value) {
+        primitives[stackPointer] = Double.doubleToRawLongBits(value);
+        stackPointer += 2;
+    }
+
+    public double popDouble() {
+        stackPointer -= 2;
+        return Double.longBitsToDouble(primitives[stackPointer]);
+    }
+
+    /**
+     * Pushes a reference or word value.
+     */
+    public void pushReference(Value value) {
+        references[stackPointer++] = value;
+    }
+
+    /**
+     * Pops a reference or word value.
+     */
+    public Value popReference() {
+        return references[--stackPointer];
+    }
+
+    /**
+     * Gets the reference or word value in the operand stack slot that is {@code depth} slots below the top slot.
+     */
+    public Value peekReference(int depth) {
+        return references[stackPointer - 1 - depth];
+    }
+
+    /**
+     * Pushes a value, converting it to the representation used for its kind. A {@linkplain VoidValue void} value is
+     * not pushed.
+     */
+    public void push(Value value) {
+        switch (value.kind().stackKind.asEnum) {
+            case INT:
+                pushInt(value.toInt());
+                break;
+            case FLOAT:
+                pushFloat(value.toFloat());
+                break;
+            case LONG:
+                pushLong(value.toLong());
+                break;
+            case DOUBLE:
+                pushDouble(value.toDouble());
+                break;
+            case VOID:
+                break;
+            default:
+                pushReference(value);
+                break;
+        }
+    }
+
+    /**
+     * Pops a value of a given kind, boxing it as a {@link Value}.
+     */
+    public Value pop(Kind kind) {
+        switch (kind.stackKind.asEnum) {
+            case INT:
+                return IntValue.from(popInt());
+            case FLOAT:
+                return FloatValue.from(popFloat());
+            case LONG:
+                return LongValue.from(popLong());
+            case DOUBLE:
+                return DoubleValue.from(popDouble());
+            case VOID:
+                return VoidValue.VOID;
+            default:
+                return popReference();
+        }
+    }
+
+    /**
+     * Removes a given number of slots from the top of the operand stack.
+     */
+    public void discard(int slots) {
+        stackPointer -= slots;
+    }
+
+    public void dup() {
+        copySlot(stackPointer - 1, stackPointer);
+        stackPointer++;
+    }
+
+    public void dupX1() {
+        copySlot(stackPointer - 1, stackPointer);
+        copySlot(stackPointer - 2, stackPointer - 1);
+        copySlot(stackPointer, stackPointer - 2);
+        stackPointer++;
     }
 
-    public byte readByte() {
+    public void dupX2() {
+        dup(1, 2);
+    }
+
+    public void dup2() {
+        copySlot(stackPointer - 2, stackPointer);
+        copySlot(stackPointer - 1, stackPointer + 1);
+        stackPointer += 2;
+    }
+
+    public void dup2X1() {
+        dup(2, 1);
+    }
+
+    public void dup2X2() {
+        dup(2, 2);
+    }
+
+    public void swap() {
+        final long primitive = primitives[stackPointer - 1];
+        final Value reference = references[stackPointer - 1];
+        copySlot(stackPointer - 2, stackPointer - 1);
+        primitives[stackPointer - 2] = primitive;
+        references[stackPointer - 2] = reference;
+    }
+
+    /**
+     * Duplicates the top {@code size} slots of the operand stack and inserts the copy {@code depth} slots below them.
+     * As the slots are copied without regard to their contents, this implements all the {@code dup} variants without
+     * needing to know the category of the values involved. The frequent {@code dup}, {@code dup_x1} and {@code dup2}
+     * forms are expanded into straight-line slot copies instead.
+     */
+    private void dup(int size, int depth) {
+        final int bottom = stackPointer - size - depth;
+        for (int i = stackPointer - 1; i >= bottom; i--) {
+            copySlot(i, i + size);
+        }
+        for (int i = 0; i < size; i++) {
+            copySlot(stackPointer + i, bottom + i);
+        }
+        stackPointer += size;
+    }
+
+    private void copySlot(int from, int to) {
+        primitives[to] = primitives[from];
+        references[to] = references[from];
+    }
+
+    /**
+     * Removes the top {@code slots} slots of this frame's operand stack so that they can become the first local
+     * variables of a callee's frame.
+     *
+     * @return the index of the lowest slot removed
+     */
+    int popArguments(int slots) {
+        stackPointer -= slots;
+        return stackPointer;
+    }
+
+    /**
+     * Empties the operand stack.
+     */
+    public void clearStack() {
+        stackPointer = stackBase;
+    }
+
+    /**
+     * Gets the number of slots currently occupied on the operand stack.
+     */
+    public int stackDepth() {
+        return stackPointer - stackBase;
+    }
+
+    /**
+     * Advances to the next instruction and returns its opcode.
+     */
+    public int readOpcode() {
+        currentIndex = nextIndex++;
         try {
-            return code[currentBytePosition++];
+            return code.opcodes[currentIndex];
         } catch (ArrayIndexOutOfBoundsException arrayIndexOutOfBoundsException) {
             throw new VerifyError("Ran off end of code");
         }
     }
 
-    public short readShort() {
-        final int high = readByte();
-        final int low = readByte() & 0xff;
-        return (short) ((high << 8) | low);
+    /**
+     * Records the execution of the current instruction in the {@linkplain DecodedCode#recordSequence(int) sequence
+     * profile} of this frame's code.
+     */
+    public void recordSequence() {
+        code.recordSequence(currentIndex);
     }
 
-    public int readInt() {
-        final int b3 = readByte() << 24;
-        final int b2 = (readByte() & 0xff) << 16;
-        final int b1 = (readByte() & 0xff) << 8;
-        final int b0 = readByte() & 0xff;
-        return b3 | b2 | b1 | b0;
+    /**
+     * Gets the index of the current instruction in the {@linkplain DecodedCode decoded code}.
+     */
+    public int currentIndex() {
+        return currentIndex;
     }
 
-    public void skipBytes(int n) {
-        currentBytePosition += n;
+    /**
+     * Arranges for the current instruction to be executed again as the next instruction.
+     */
+    public void rewind() {
+        nextIndex = currentIndex;
     }
 
-    public void alignInstructionPosition() {
-        final int remainder = currentBytePosition % 4;
-        if (remainder != 0) {
-            currentBytePosition += 4 - remainder;
-        }
+    /**
+     * Gets the opcode of the current instruction as it was before any {@linkplain Superinstructions fusion}.
+     * This is only valid for an instruction that is not the first in a fused sequence.
+     */
+    public int currentOpcode() {
+        return code.opcodes[currentIndex];
     }
 
-    public void jump(int offset) {
-        currentBytePosition = currentOpcodePosition + offset;
+    /**
+     * Makes the last instruction in the sequence replaced by the current {@linkplain Superinstructions superinstruction}
+     * the current instruction, so that any exception raised while executing it has the correct bytecode position.
+     *
+     * @param length the number of instructions replaced by the superinstruction
+     */
+    public void enterFused(int length) {
+        currentIndex += length - 1;
+        nextIndex += length - 1;
     }
 
-    public int currentOpcodePosition() {
-        return currentOpcodePosition;
+    /**
+     * Gets the first decoded operand of an instruction that precedes the current one in a sequence replaced by a
+     * {@linkplain Superinstructions superinstruction}.
+     *
+     * @param distance the number of instructions by which the instruction precedes the current one
+     */
+    public int fusedOperand(int distance) {
+        return code.operands[currentIndex - distance];
     }
 
-    public int currentBytePosition() {
-        return currentBytePosition;
+    /**
+     * Gets the first decoded operand of the current instruction.
+     */
+    public int operand() {
+        return code.operands[currentIndex];
     }
 
-    public void setBytecodePosition(int bcp) {
-        currentBytePosition = bcp;
+    /**
+     * Gets the second decoded operand of the current instruction.
+     */
+    public int operand2() {
+        return code.operands2[currentIndex];
     }
 
-    public byte[] code() {
-        return code;
+    /**
+     * Gets the decoded table of the current instruction which must be a {@code tableswitch} or {@code lookupswitch}.
+     */
+    public DecodedCode.Switch switchTable() {
+        return code.switches[currentIndex];
     }
 
-    public Value getLocal(int index) {
-        return locals[index];
+    /**
+     * Gets the inline cache of the current instruction which must be an {@code invokevirtual} or
+     * {@code invokeinterface}.
+     */
+    public InlineCache inlineCache() {
+        return code.inlineCaches[currentIndex];
     }
 
-    public Stack<Value> stack() {
-        return operands;
+    /**
+     * Transfers control to the instruction at a given index in the {@linkplain #code() decoded code}.
+     */
+    public void jump(int targetIndex) {
+        nextIndex = targetIndex;
+    }
+
+    public int currentOpcodePosition() {
+        return code.bcis[currentIndex];
+    }
+
+    public void setBytecodePosition(int bcp) {
+        nextIndex = code.indexOf(bcp);
+    }
+
+    public DecodedCode code() {
+        return code;
     }
 
     public ConstantPool constantPool() {
         return method.codeAttribute().constantPool;
     }
 
+    public ConstantPoolCache constantPoolCache() {
+        return code.constantPoolCache;
+    }
+
     public ClassMethodActor method() {
         return method;
     }
 
     @Override
     public String toString() {
-        return method.format("%H.%n(%p) @ " + currentBytePosition);
+        return method.format("%H.%n(%p) @ " + currentOpcodePosition());
     }
 
     /**
-     * Handles an exception at the current execution point in this frame by updating the {@linkplain #setBytecodePosition(int)
-     * instruction pointer} to the matching exception handler in this frame. If no matching exception handler is found
-     * for the current execution point and the given exception type, then the instruction pointer in this frame is left
-     * unmodified.
+     * Handles an exception at the current execution point in this frame by updating the instruction pointer to the
+     * matching exception handler in this frame. If no matching exception handler is found for the current execution
+     * point and the given exception type, then the instruction pointer in this frame is left unmodified.
      * <p>
-     * The current execution point is derived from the value of {@link ExecutionFrame#currentBytePosition()} which is now at the first
-     * byte passed the instruction currently being executed. That is, an instruction is completely decoded before any
-     * exceptions are thrown while executing it.
+     * The handlers are searched in the {@linkplain DecodedCode#exceptionHandlers index} built when the code was
+     * decoded, so the only work done per exception is comparing instruction indexes and checking the exception type
+     * against the cached catch types.
      *
      * @param throwableClassActor the type of the exception being thrown
      * @return {@code true} if an exception handler was found, {@code false} otherwise
      */
     public boolean handleException(ClassActor throwableClassActor) {
-        final int bcp = currentOpcodePosition;
-        final ExceptionHandlerEntry[] handlers = method().codeAttribute().exceptionHandlerTable();
-        for (ExceptionHandlerEntry handler : handlers) {
-            if (bcp >= handler.startPosition() && bcp < handler.endPosition()) {
-                if (handler.catchTypeIndex() == 0) {
-                    currentBytePosition = handler.handlerPosition();
-                    return true;
-                }
-                final ClassActor catchType = constantPool().classAt(handler.catchTypeIndex()).resolve(constantPool(), handler.catchTypeIndex());
-                if (catchType.isAssignableFrom(throwableClassActor)) {
-                    currentBytePosition = handler.handlerPosition();
+        for (DecodedCode.ExceptionHandler handler : code.exceptionHandlers) {
+            if (currentIndex >= handler.startIndex && currentIndex < handler.endIndex) {
+                if (handler.catchTypeIndex == 0 || code.constantPoolCache.classActor(handler.catchTypeIndex).isAssignableFrom(throwableClassActor)) {
+                    nextIndex = handler.handlerIndex;
                     return true;
                 }
             }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import java.util.concurrent.*;
+
+import com.sun.max.tele.interpreter.ExecutionBudget.Limit;
+import com.sun.max.vm.value.*;
+
+/**
+ * Raised when an interpreter run is stopped because its {@linkplain ExecutionBudget budget} was exhausted or
+ * cancelled. The stack trace of this exception is the interpreter's call stack at the point the run was stopped. The
+ * state of the run is retained so that it can be {@linkplain #resume(ExecutionBudget) resumed}.
+ */
+public class ExecutionInterruptedException extends TeleInterpreterException {
+
+    private final Limit limit;
+    private TeleInterpreter interpreter;
+
+    ExecutionInterruptedException(Limit limit, TeleInterpreter interpreter, Machine machine) {
+        super(new CancellationException("Interpreter run stopped: " + limit.description), machine);
+        this.limit = limit;
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * Gets the limit that stopped the run.
+     */
+    public Limit limit() {
+        return limit;
+    }
+
+    /**
+     * Continues the stopped run from where it stopped. A run can only be resumed once from a given stop.
+     *
+     * @param budget the budget for the remainder of the run or {@code null} for none
+     * @return the result of the run
+     * @throws TeleInterpreterException if an uncaught exception occurs during the rest of the run or if it is stopped
+     *             again
+     */
+    public Value resume(ExecutionBudget budget) throws TeleInterpreterException {
+        final TeleInterpreter interpreter = this.interpreter;
+        if (interpreter == null) {
+            throw new IllegalStateException("Interpreter run has already been resumed");
+        }
+        this.interpreter = null;
+        return interpreter.resume(budget);
+    }
+}
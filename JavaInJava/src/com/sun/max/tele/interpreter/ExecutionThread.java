@@ -21,13 +21,17 @@
 package com.sun.max.tele.interpreter;
 
 import java.io.*;
+import java.util.*;
 
 import com.sun.max.vm.actor.holder.*;
 import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.classfile.*;
+import com.sun.max.vm.value.*;
 
 /**
- * Instances of this class contain the execution state of a single thread in the system.
- * NOTE: currently there _is_ only one thread. Please ignore the man behind the curtain.
+ * Instances of this class contain the execution state of a single thread in the system. The threads of a
+ * {@linkplain Machine machine} are green threads that the machine schedules in turn on the single host thread
+ * running the interpreter.
  *
  * @author Athul Acharya
  */
@@ -38,7 +42,26 @@ class ExecutionThread {
      */
     public static final int STACK_SIZE = 1000;
 
+    /**
+     * The initial number of slots for the locals and operand stacks of this thread's frames.
+     */
+    private static final int INITIAL_SLOTS = 1024;
+
     private ExecutionFrame frame;
+    private ExecutionFrame[] frames = new ExecutionFrame[16];
+    private long[] primitives = new long[INITIAL_SLOTS];
+    private Value[] references = new Value[INITIAL_SLOTS];
+
+    /**
+     * The object whose monitor this thread is waiting to acquire or {@code null} if this thread is not blocked.
+     */
+    Object blockedOn;
+
+    /**
+     * The evaluation being performed by this thread or {@code null} if it is the main thread of its machine.
+     */
+    Evaluation evaluation;
+
     //private int _prio;
     //private ThreadType _threadType;
 
@@ -49,11 +72,46 @@ class ExecutionThread {
     }
 
     public ExecutionFrame pushFrame(ClassMethodActor method) {
-        this.frame = new ExecutionFrame(frame, method);
-        if (frame.depth() > STACK_SIZE) {
+        return pushFrame(method, 0);
+    }
+
+    /**
+     * Pushes a frame for a method whose arguments occupy the top slots of the current frame's operand stack. The
+     * arguments become the callee's first local variables where they are.
+     *
+     * @param argumentSlots the number of slots occupied by the arguments
+     */
+    ExecutionFrame pushFrame(ClassMethodActor method, int argumentSlots) {
+        final int depth = frame == null ? 1 : frame.depth() + 1;
+        if (depth > STACK_SIZE) {
             throw new StackOverflowError();
         }
-        return frame;
+        final int localBase = frame == null ? 0 : frame.popArguments(argumentSlots);
+        final CodeAttribute codeAttribute = method.codeAttribute();
+        final int limit = localBase + codeAttribute.maxLocals + codeAttribute.maxStack;
+        if (limit > primitives.length) {
+            grow(limit);
+        }
+        if (depth > frames.length) {
+            frames = Arrays.copyOf(frames, frames.length * 2);
+        }
+        ExecutionFrame callee = frames[depth - 1];
+        if (callee == null) {
+            callee = new ExecutionFrame(frame);
+            frames[depth - 1] = callee;
+        }
+        callee.enter(method, primitives, references, localBase);
+        frame = callee;
+        return callee;
+    }
+
+    private void grow(int minimumSlots) {
+        final int length = Math.max(minimumSlots, primitives.length * 2);
+        primitives = Arrays.copyOf(primitives, length);
+        references = Arrays.copyOf(references, length);
+        for (ExecutionFrame f = frame; f != null; f = f.callersFrame()) {
+            f.relocate(primitives, references);
+        }
     }
 
     public ExecutionFrame popFrame() {
@@ -65,6 +123,17 @@ class ExecutionThread {
         return frame;
     }
 
+    /**
+     * Discards all the frames of this thread.
+     */
+    void reset() {
+        frame = null;
+        // Drop the values left in the slots so that they can be collected
+        Arrays.fill(references, null);
+        blockedOn = null;
+        evaluation = null;
+    }
+
     public static enum ThreadType {
         NORMAL_THREAD,
         VM_THREAD,
@@ -0,0 +1,1326 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import static com.sun.cri.bytecode.Bytecodes.*;
+
+import com.sun.max.tele.interpreter.TeleInterpreter.*;
+import com.sun.max.vm.type.*;
+import com.sun.max.vm.value.*;
+
+/**
+ * A table of handlers, one per opcode and {@linkplain Superinstructions superinstruction}, used by the {@linkplain TeleInterpreter.Dispatch#HANDLER_TABLE handler table}
+ * dispatch of the interpreter. Each handler executes a single instruction and is small enough to be compiled and
+ * inlined on its own, which the {@linkplain TeleInterpreter.Dispatch#SWITCH switch} dispatch cannot be.
+ * <p>
+ * The handlers share the implementation of any instruction that is not a one-liner with the switch dispatch so that
+ * the two dispatch mechanisms execute identical code and can be meaningfully compared.
+ */
+final class HandlerTable {
+
+    private HandlerTable() {
+    }
+
+    /**
+     * Executes a single instruction.
+     */
+    abstract static class Handler {
+        /**
+         * Executes the current instruction of an interpreter.
+         *
+         * @return {@link MethodStatus#METHOD_END} if the instruction returned from the outermost frame
+         */
+        abstract MethodStatus execute(TeleInterpreter interpreter) throws Throwable;
+    }
+
+    private static final MethodStatus CONTINUE = MethodStatus.METHOD_CONTINUE;
+
+    /**
+     * The handler for each opcode.
+     */
+    static final Handler[] HANDLERS = new Handler[Superinstructions.LIMIT];
+
+    private static void register(int opcode, Handler handler) {
+        assert HANDLERS[opcode] instanceof Unsupported : "duplicate handler for " + Superinstructions.nameOf(opcode);
+        HANDLERS[opcode] = handler;
+    }
+
+    private static final class Unsupported extends Handler {
+        private final int opcode;
+
+        Unsupported(int opcode) {
+            this.opcode = opcode;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+            interpreter.unsupported(opcode);
+            return CONTINUE;
+        }
+    }
+
+    private static final class IntConstant extends Handler {
+        private final int value;
+
+        IntConstant(int value) {
+            this.value = value;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) {
+            interpreter.pushInt(value);
+            return CONTINUE;
+        }
+    }
+
+    private static final class LongConstant extends Handler {
+        private final long value;
+
+        LongConstant(long value) {
+            this.value = value;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) {
+            interpreter.pushLong(value);
+            return CONTINUE;
+        }
+    }
+
+    private static final class FloatConstant extends Handler {
+        private final float value;
+
+        FloatConstant(float value) {
+            this.value = value;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) {
+            interpreter.pushFloat(value);
+            return CONTINUE;
+        }
+    }
+
+    private static final class DoubleConstant extends Handler {
+        private final double value;
+
+        DoubleConstant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) {
+            interpreter.pushDouble(value);
+            return CONTINUE;
+        }
+    }
+
+    private static final class IntLoad extends Handler {
+        private final int index;
+
+        IntLoad(int index) {
+            this.index = index;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) {
+            interpreter.pushInt(interpreter.frame().getIntLocal(index));
+            return CONTINUE;
+        }
+    }
+
+    private static final class LongLoad extends Handler {
+        private final int index;
+
+        LongLoad(int index) {
+            this.index = index;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) {
+            interpreter.pushLong(interpreter.frame().getLongLocal(index));
+            return CONTINUE;
+        }
+    }
+
+    private static final class FloatLoad extends Handler {
+        private final int index;
+
+        FloatLoad(int index) {
+            this.index = index;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) {
+            interpreter.pushFloat(interpreter.frame().getFloatLocal(index));
+            return CONTINUE;
+        }
+    }
+
+    private static final class DoubleLoad extends Handler {
+        private final int index;
+
+        DoubleLoad(int index) {
+            this.index = index;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) {
+            interpreter.pushDouble(interpreter.frame().getDoubleLocal(index));
+            return CONTINUE;
+        }
+    }
+
+    private static final class SlotLoad extends Handler {
+        private final int index;
+
+        SlotLoad(int index) {
+            this.index = index;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) {
+            interpreter.frame().loadSlot(index);
+            return CONTINUE;
+        }
+    }
+
+    private static final class IntStore extends Handler {
+        private final int index;
+
+        IntStore(int index) {
+            this.index = index;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) {
+            interpreter.frame().setIntLocal(index, interpreter.popInt());
+            return CONTINUE;
+        }
+    }
+
+    private static final class LongStore extends Handler {
+        private final int index;
+
+        LongStore(int index) {
+            this.index = index;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) {
+            interpreter.frame().setLongLocal(index, interpreter.popLong());
+            return CONTINUE;
+        }
+    }
+
+    private static final class FloatStore extends Handler {
+        private final int index;
+
+        FloatStore(int index) {
+            this.index = index;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) {
+            interpreter.frame().setFloatLocal(index, interpreter.popFloat());
+            return CONTINUE;
+        }
+    }
+
+    private static final class DoubleStore extends Handler {
+        private final int index;
+
+        DoubleStore(int index) {
+            this.index = index;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) {
+            interpreter.frame().setDoubleLocal(index, interpreter.popDouble());
+            return CONTINUE;
+        }
+    }
+
+    private static final class SlotStore extends Handler {
+        private final int index;
+
+        SlotStore(int index) {
+            this.index = index;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) {
+            interpreter.frame().storeSlot(index);
+            return CONTINUE;
+        }
+    }
+
+    private static final class ArrayLoad extends Handler {
+        private final Kind kind;
+
+        ArrayLoad(Kind kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+            interpreter.arrayLoad(kind);
+            return CONTINUE;
+        }
+    }
+
+    private static final class IntArrayStore extends Handler {
+        private final Kind kind;
+
+        IntArrayStore(Kind kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+            interpreter.intArrayStore(kind);
+            return CONTINUE;
+        }
+    }
+
+    static {
+        for (int opcode = 0; opcode < HANDLERS.length; opcode++) {
+            HANDLERS[opcode] = new Unsupported(opcode);
+        }
+
+        register(NOP, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                return CONTINUE;
+            }
+        });
+
+        // Constants
+
+        register(ACONST_NULL, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushReference(ReferenceValue.NULL);
+                return CONTINUE;
+            }
+        });
+        for (int value = -1; value <= 5; value++) {
+            register(ICONST_0 + value, new IntConstant(value));
+        }
+        register(LCONST_0, new LongConstant(0L));
+        register(LCONST_1, new LongConstant(1L));
+        register(FCONST_0, new FloatConstant(0.0F));
+        register(FCONST_1, new FloatConstant(1.0F));
+        register(FCONST_2, new FloatConstant(2.0F));
+        register(DCONST_0, new DoubleConstant(0.0D));
+        register(DCONST_1, new DoubleConstant(1.0D));
+        final Handler immediate = new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt(interpreter.operand());
+                return CONTINUE;
+            }
+        };
+        register(BIPUSH, immediate);
+        register(SIPUSH, immediate);
+        final Handler loadConstant = new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.loadConstant();
+                return CONTINUE;
+            }
+        };
+        register(LDC, loadConstant);
+        register(LDC_W, loadConstant);
+        register(LDC2_W, loadConstant);
+
+        // Loads and stores
+
+        register(ILOAD, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt(interpreter.frame().getIntLocal(interpreter.operand()));
+                return CONTINUE;
+            }
+        });
+        register(LLOAD, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushLong(interpreter.frame().getLongLocal(interpreter.operand()));
+                return CONTINUE;
+            }
+        });
+        register(FLOAD, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushFloat(interpreter.frame().getFloatLocal(interpreter.operand()));
+                return CONTINUE;
+            }
+        });
+        register(DLOAD, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushDouble(interpreter.frame().getDoubleLocal(interpreter.operand()));
+                return CONTINUE;
+            }
+        });
+        final Handler slotLoad = new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.frame().loadSlot(interpreter.operand());
+                return CONTINUE;
+            }
+        };
+        register(ALOAD, slotLoad);
+        register(WLOAD, slotLoad);
+        for (int index = 0; index <= 3; index++) {
+            register(ILOAD_0 + index, new IntLoad(index));
+            register(LLOAD_0 + index, new LongLoad(index));
+            register(FLOAD_0 + index, new FloatLoad(index));
+            register(DLOAD_0 + index, new DoubleLoad(index));
+            register(ALOAD_0 + index, new SlotLoad(index));
+            register(ISTORE_0 + index, new IntStore(index));
+            register(LSTORE_0 + index, new LongStore(index));
+            register(FSTORE_0 + index, new FloatStore(index));
+            register(DSTORE_0 + index, new DoubleStore(index));
+            register(ASTORE_0 + index, new SlotStore(index));
+        }
+        register(ISTORE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.frame().setIntLocal(interpreter.operand(), interpreter.popInt());
+                return CONTINUE;
+            }
+        });
+        register(LSTORE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.frame().setLongLocal(interpreter.operand(), interpreter.popLong());
+                return CONTINUE;
+            }
+        });
+        register(FSTORE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.frame().setFloatLocal(interpreter.operand(), interpreter.popFloat());
+                return CONTINUE;
+            }
+        });
+        register(DSTORE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.frame().setDoubleLocal(interpreter.operand(), interpreter.popDouble());
+                return CONTINUE;
+            }
+        });
+        register(ASTORE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.frame().storeSlot(interpreter.operand());
+                return CONTINUE;
+            }
+        });
+
+        // Array accesses
+
+        register(IALOAD, new ArrayLoad(Kind.INT));
+        register(LALOAD, new ArrayLoad(Kind.LONG));
+        register(FALOAD, new ArrayLoad(Kind.FLOAT));
+        register(DALOAD, new ArrayLoad(Kind.DOUBLE));
+        register(AALOAD, new ArrayLoad(Kind.REFERENCE));
+        register(BALOAD, new ArrayLoad(Kind.BYTE));
+        register(CALOAD, new ArrayLoad(Kind.CHAR));
+        register(SALOAD, new ArrayLoad(Kind.SHORT));
+        register(IASTORE, new IntArrayStore(Kind.INT));
+        register(BASTORE, new IntArrayStore(Kind.BYTE));
+        register(CASTORE, new IntArrayStore(Kind.CHAR));
+        register(SASTORE, new IntArrayStore(Kind.SHORT));
+        register(LASTORE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.longArrayStore();
+                return CONTINUE;
+            }
+        });
+        register(FASTORE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.floatArrayStore();
+                return CONTINUE;
+            }
+        });
+        register(DASTORE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.doubleArrayStore();
+                return CONTINUE;
+            }
+        });
+        register(AASTORE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.referenceArrayStore();
+                return CONTINUE;
+            }
+        });
+
+        // Operand stack manipulation
+
+        register(POP, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.frame().discard(1);
+                return CONTINUE;
+            }
+        });
+        register(POP2, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.frame().discard(2);
+                return CONTINUE;
+            }
+        });
+        register(DUP, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.frame().dup();
+                return CONTINUE;
+            }
+        });
+        register(DUP_X1, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.frame().dupX1();
+                return CONTINUE;
+            }
+        });
+        register(DUP_X2, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.frame().dupX2();
+                return CONTINUE;
+            }
+        });
+        register(DUP2, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.frame().dup2();
+                return CONTINUE;
+            }
+        });
+        register(DUP2_X1, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.frame().dup2X1();
+                return CONTINUE;
+            }
+        });
+        register(DUP2_X2, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.frame().dup2X2();
+                return CONTINUE;
+            }
+        });
+        register(SWAP, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.frame().swap();
+                return CONTINUE;
+            }
+        });
+
+        // Arithmetic
+
+        register(IADD, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt(interpreter.popInt() + interpreter.popInt());
+                return CONTINUE;
+            }
+        });
+        register(LADD, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushLong(interpreter.popLong() + interpreter.popLong());
+                return CONTINUE;
+            }
+        });
+        register(FADD, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushFloat(interpreter.popFloat() + interpreter.popFloat());
+                return CONTINUE;
+            }
+        });
+        register(DADD, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushDouble(interpreter.popDouble() + interpreter.popDouble());
+                return CONTINUE;
+            }
+        });
+        register(ISUB, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt(-interpreter.popInt() + interpreter.popInt());
+                return CONTINUE;
+            }
+        });
+        register(LSUB, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushLong(-interpreter.popLong() + interpreter.popLong());
+                return CONTINUE;
+            }
+        });
+        register(FSUB, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushFloat(-interpreter.popFloat() + interpreter.popFloat());
+                return CONTINUE;
+            }
+        });
+        register(DSUB, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushDouble(-interpreter.popDouble() + interpreter.popDouble());
+                return CONTINUE;
+            }
+        });
+        register(IMUL, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt(interpreter.popInt() * interpreter.popInt());
+                return CONTINUE;
+            }
+        });
+        register(LMUL, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushLong(interpreter.popLong() * interpreter.popLong());
+                return CONTINUE;
+            }
+        });
+        register(FMUL, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushFloat(interpreter.popFloat() * interpreter.popFloat());
+                return CONTINUE;
+            }
+        });
+        register(DMUL, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushDouble(interpreter.popDouble() * interpreter.popDouble());
+                return CONTINUE;
+            }
+        });
+        register(IDIV, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                final int divisor = interpreter.popIntDivisor();
+                interpreter.pushInt(interpreter.popInt() / divisor);
+                return CONTINUE;
+            }
+        });
+        register(LDIV, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                final long divisor = interpreter.popLongDivisor();
+                interpreter.pushLong(interpreter.popLong() / divisor);
+                return CONTINUE;
+            }
+        });
+        register(FDIV, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                final float divisor = interpreter.popFloatDivisor();
+                interpreter.pushFloat(interpreter.popFloat() / divisor);
+                return CONTINUE;
+            }
+        });
+        register(DDIV, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                final double divisor = interpreter.popDoubleDivisor();
+                interpreter.pushDouble(interpreter.popDouble() / divisor);
+                return CONTINUE;
+            }
+        });
+        register(IREM, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                final int divisor = interpreter.popIntDivisor();
+                interpreter.pushInt(interpreter.popInt() % divisor);
+                return CONTINUE;
+            }
+        });
+        register(LREM, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                final long divisor = interpreter.popLongDivisor();
+                interpreter.pushLong(interpreter.popLong() % divisor);
+                return CONTINUE;
+            }
+        });
+        register(FREM, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                final float divisor = interpreter.popFloatDivisor();
+                interpreter.pushFloat(interpreter.popFloat() % divisor);
+                return CONTINUE;
+            }
+        });
+        register(DREM, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                final double divisor = interpreter.popDoubleDivisor();
+                interpreter.pushDouble(interpreter.popDouble() % divisor);
+                return CONTINUE;
+            }
+        });
+        register(INEG, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt(0 - interpreter.popInt());
+                return CONTINUE;
+            }
+        });
+        register(LNEG, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushLong(0 - interpreter.popLong());
+                return CONTINUE;
+            }
+        });
+        register(FNEG, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushFloat((float) 0.0 - interpreter.popFloat());
+                return CONTINUE;
+            }
+        });
+        register(DNEG, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushDouble(0.0 - interpreter.popDouble());
+                return CONTINUE;
+            }
+        });
+
+        // Shifts and logical operations
+
+        register(ISHL, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                final int amount = interpreter.popInt();
+                interpreter.pushInt(interpreter.popInt() << (amount & 0x1F));
+                return CONTINUE;
+            }
+        });
+        register(LSHL, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                final int amount = interpreter.popInt();
+                interpreter.pushLong(interpreter.popLong() << (amount & 0x3F));
+                return CONTINUE;
+            }
+        });
+        register(ISHR, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                final int amount = interpreter.popInt();
+                interpreter.pushInt(interpreter.popInt() >> (amount & 0x1F));
+                return CONTINUE;
+            }
+        });
+        register(LSHR, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                final int amount = interpreter.popInt();
+                interpreter.pushLong(interpreter.popLong() >> (amount & 0x3F));
+                return CONTINUE;
+            }
+        });
+        register(IUSHR, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                final int amount = interpreter.popInt();
+                interpreter.pushInt(interpreter.popInt() >>> (amount & 0x1F));
+                return CONTINUE;
+            }
+        });
+        register(LUSHR, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                final int amount = interpreter.popInt();
+                interpreter.pushLong(interpreter.popLong() >>> (amount & 0x3F));
+                return CONTINUE;
+            }
+        });
+        register(IAND, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt(interpreter.popInt() & interpreter.popInt());
+                return CONTINUE;
+            }
+        });
+        register(LAND, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushLong(interpreter.popLong() & interpreter.popLong());
+                return CONTINUE;
+            }
+        });
+        register(IOR, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt(interpreter.popInt() | interpreter.popInt());
+                return CONTINUE;
+            }
+        });
+        register(LOR, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushLong(interpreter.popLong() | interpreter.popLong());
+                return CONTINUE;
+            }
+        });
+        register(IXOR, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt(interpreter.popInt() ^ interpreter.popInt());
+                return CONTINUE;
+            }
+        });
+        register(LXOR, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushLong(interpreter.popLong() ^ interpreter.popLong());
+                return CONTINUE;
+            }
+        });
+        register(IINC, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.increment();
+                return CONTINUE;
+            }
+        });
+
+        // Conversions
+
+        register(I2L, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushLong(interpreter.popInt());
+                return CONTINUE;
+            }
+        });
+        register(I2F, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushFloat(interpreter.popInt());
+                return CONTINUE;
+            }
+        });
+        register(I2D, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushDouble(interpreter.popInt());
+                return CONTINUE;
+            }
+        });
+        register(L2I, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt((int) interpreter.popLong());
+                return CONTINUE;
+            }
+        });
+        register(L2F, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushFloat(interpreter.popLong());
+                return CONTINUE;
+            }
+        });
+        register(L2D, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushDouble(interpreter.popLong());
+                return CONTINUE;
+            }
+        });
+        register(F2I, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt((int) interpreter.popFloat());
+                return CONTINUE;
+            }
+        });
+        register(F2L, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushLong((long) interpreter.popFloat());
+                return CONTINUE;
+            }
+        });
+        register(F2D, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushDouble(interpreter.popFloat());
+                return CONTINUE;
+            }
+        });
+        register(D2I, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt((int) interpreter.popDouble());
+                return CONTINUE;
+            }
+        });
+        register(D2L, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushLong((long) interpreter.popDouble());
+                return CONTINUE;
+            }
+        });
+        register(D2F, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushFloat((float) interpreter.popDouble());
+                return CONTINUE;
+            }
+        });
+        register(I2B, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt((byte) interpreter.popInt());
+                return CONTINUE;
+            }
+        });
+        register(I2C, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt((char) interpreter.popInt());
+                return CONTINUE;
+            }
+        });
+        register(I2S, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt((short) interpreter.popInt());
+                return CONTINUE;
+            }
+        });
+
+        // Comparisons and branches
+
+        register(LCMP, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.longCompare();
+                return CONTINUE;
+            }
+        });
+        final Handler floatCompare = new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.floatCompare();
+                return CONTINUE;
+            }
+        };
+        register(FCMPL, floatCompare);
+        register(FCMPG, floatCompare);
+        final Handler doubleCompare = new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.doubleCompare();
+                return CONTINUE;
+            }
+        };
+        register(DCMPL, doubleCompare);
+        register(DCMPG, doubleCompare);
+        register(IFEQ, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.jumpIf(interpreter.popInt() == 0, interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        register(IFNE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.jumpIf(interpreter.popInt() != 0, interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        register(IFLT, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.jumpIf(interpreter.popInt() < 0, interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        register(IFGE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.jumpIf(interpreter.popInt() >= 0, interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        register(IFGT, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.jumpIf(interpreter.popInt() > 0, interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        register(IFLE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.jumpIf(interpreter.popInt() <= 0, interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        register(IF_ICMPEQ, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                final int s1 = interpreter.popInt();
+                interpreter.jumpIf(interpreter.popInt() == s1, interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        register(IF_ICMPNE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                final int s1 = interpreter.popInt();
+                interpreter.jumpIf(interpreter.popInt() != s1, interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        register(IF_ICMPLT, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                final int s1 = interpreter.popInt();
+                interpreter.jumpIf(interpreter.popInt() < s1, interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        register(IF_ICMPGE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                final int s1 = interpreter.popInt();
+                interpreter.jumpIf(interpreter.popInt() >= s1, interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        register(IF_ICMPGT, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                final int s1 = interpreter.popInt();
+                interpreter.jumpIf(interpreter.popInt() > s1, interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        register(IF_ICMPLE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                final int s1 = interpreter.popInt();
+                interpreter.jumpIf(interpreter.popInt() <= s1, interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        register(IF_ACMPEQ, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                final Value s1 = interpreter.popReference();
+                interpreter.jumpIf(interpreter.popReference().equals(s1), interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        register(IF_ACMPNE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                final Value s1 = interpreter.popReference();
+                interpreter.jumpIf(!interpreter.popReference().equals(s1), interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        register(IFNULL, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.jumpIf(interpreter.popReference().isZero(), interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        register(IFNONNULL, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.jumpIf(!interpreter.popReference().isZero(), interpreter.operand());
+                return CONTINUE;
+            }
+        });
+        final Handler jump = new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.jump(interpreter.operand());
+                return CONTINUE;
+            }
+        };
+        register(GOTO, jump);
+        register(GOTO_W, jump);
+        final Handler jumpSubroutine = new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.pushInt(interpreter.operand2());
+                interpreter.jump(interpreter.operand());
+                return CONTINUE;
+            }
+        };
+        register(JSR, jumpSubroutine);
+        register(JSR_W, jumpSubroutine);
+        register(RET, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.ret();
+                return CONTINUE;
+            }
+        });
+        final Handler switchJump = new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.switchJump();
+                return CONTINUE;
+            }
+        };
+        register(TABLESWITCH, switchJump);
+        register(LOOKUPSWITCH, switchJump);
+
+        // Returns
+
+        register(IRETURN, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                return interpreter.intReturn();
+            }
+        });
+        register(LRETURN, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                return interpreter.longReturn();
+            }
+        });
+        register(FRETURN, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                return interpreter.floatReturn();
+            }
+        });
+        register(DRETURN, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                return interpreter.doubleReturn();
+            }
+        });
+        register(ARETURN, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                return interpreter.referenceReturn();
+            }
+        });
+        register(RETURN, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                return interpreter.voidReturn();
+            }
+        });
+
+        // Field accesses
+
+        register(GETSTATIC, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.getStatic();
+                return CONTINUE;
+            }
+        });
+        register(PUTSTATIC, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.putStatic();
+                return CONTINUE;
+            }
+        });
+        register(GETFIELD, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.getField();
+                return CONTINUE;
+            }
+        });
+        register(PUTFIELD, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.putField();
+                return CONTINUE;
+            }
+        });
+
+        // Invocations
+
+        register(INVOKEVIRTUAL, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.invokeVirtual();
+                return CONTINUE;
+            }
+        });
+        register(INVOKESPECIAL, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.invokeSpecial();
+                return CONTINUE;
+            }
+        });
+        register(INVOKESTATIC, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.invokeStatic();
+                return CONTINUE;
+            }
+        });
+        register(INVOKEINTERFACE, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.invokeInterface();
+                return CONTINUE;
+            }
+        });
+
+        // Objects and arrays
+
+        register(NEW, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.newInstance();
+                return CONTINUE;
+            }
+        });
+        register(NEWARRAY, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.newArray();
+                return CONTINUE;
+            }
+        });
+        register(ANEWARRAY, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.newReferenceArray();
+                return CONTINUE;
+            }
+        });
+        register(MULTIANEWARRAY, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.newMultiArray();
+                return CONTINUE;
+            }
+        });
+        register(ARRAYLENGTH, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.arrayLength();
+                return CONTINUE;
+            }
+        });
+        register(ATHROW, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.throwException();
+                return CONTINUE;
+            }
+        });
+        register(CHECKCAST, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.checkCast();
+                return CONTINUE;
+            }
+        });
+        register(INSTANCEOF, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.instanceOf();
+                return CONTINUE;
+            }
+        });
+        register(MONITORENTER, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws TeleInterpreterException {
+                interpreter.monitorEnter();
+                return CONTINUE;
+            }
+        });
+        register(MONITOREXIT, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws TeleInterpreterException {
+                interpreter.monitorExit();
+                return CONTINUE;
+            }
+        });
+
+        // Superinstructions
+
+        register(Superinstructions.LOAD_GETFIELD, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.loadGetField();
+                return CONTINUE;
+            }
+        });
+        register(Superinstructions.LOAD_ARRAYLENGTH, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) throws Throwable {
+                interpreter.loadArrayLength();
+                return CONTINUE;
+            }
+        });
+        register(Superinstructions.LOAD_LOAD_IF_ICMP, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.loadLoadCompare();
+                return CONTINUE;
+            }
+        });
+        register(Superinstructions.CONSTANT_IADD, new Handler() {
+            @Override
+            MethodStatus execute(TeleInterpreter interpreter) {
+                interpreter.constantAdd();
+                return CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import java.lang.reflect.*;
+import java.util.concurrent.*;
+
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.reference.*;
+import com.sun.max.vm.type.*;
+import com.sun.max.vm.value.*;
+
+/**
+ * A method of the host VM bound for direct invocation from interpreted code. This is the path taken by native methods,
+ * methods without bytecode and methods of {@link com.sun.max.unsafe.Word} types. Compared to
+ * {@link MethodActor#invoke(Value...)}, the reflective method is looked up and made accessible only once, and the
+ * arguments and result are moved between the operand stack and their boxed Java form by converters chosen for the
+ * signature of the method, without intermediate {@link Value} arrays.
+ */
+final class HostCall {
+
+    /**
+     * Pops an argument of a given kind off the operand stack and boxes it as expected by reflection.
+     */
+    private abstract static class ArgumentConverter {
+        abstract Object pop(Machine machine, ExecutionFrame frame);
+    }
+
+    /**
+     * Pushes a boxed result of a given kind onto the operand stack.
+     */
+    private abstract static class ResultConverter {
+        abstract void push(Machine machine, ExecutionFrame frame, Object result);
+    }
+
+    private final Method javaMethod;
+
+    private final boolean isStatic;
+
+    private final ArgumentConverter[] arguments;
+
+    private final ResultConverter result;
+
+    private HostCall(ClassMethodActor method, Method javaMethod) {
+        this.javaMethod = javaMethod;
+        this.isStatic = method.isStatic();
+        final Kind[] parameterKinds = method.descriptor().copyParameterKinds(null, 0);
+        arguments = new ArgumentConverter[parameterKinds.length];
+        for (int i = 0; i < parameterKinds.length; i++) {
+            arguments[i] = argumentConverter(parameterKinds[i]);
+        }
+        result = resultConverter(method.resultKind());
+    }
+
+    /**
+     * Denotes a method that cannot be bound.
+     */
+    private static final HostCall UNBOUND = new HostCall();
+
+    private HostCall() {
+        javaMethod = null;
+        isStatic = true;
+        arguments = null;
+        result = null;
+    }
+
+    private static final ConcurrentMap<ClassMethodActor, HostCall> cache = new ConcurrentHashMap<ClassMethodActor, HostCall>();
+
+    /**
+     * Gets the bound host call for a given method.
+     *
+     * @return {@code null} if the method cannot be bound, in which case it must be invoked with
+     *         {@link MethodActor#invoke(Value...)}
+     */
+    static HostCall of(ClassMethodActor method) {
+        HostCall call = cache.get(method);
+        if (call == null) {
+            call = bind(method);
+            cache.put(method, call);
+        }
+        return call == UNBOUND ? null : call;
+    }
+
+    private static HostCall bind(ClassMethodActor method) {
+        if (method.isInitializer()) {
+            return UNBOUND;
+        }
+        try {
+            final Method javaMethod = method.toJava();
+            if (javaMethod == null) {
+                return UNBOUND;
+            }
+            javaMethod.setAccessible(true);
+            return new HostCall(method, javaMethod);
+        } catch (RuntimeException e) {
+            return UNBOUND;
+        } catch (LinkageError e) {
+            return UNBOUND;
+        }
+    }
+
+    /**
+     * Invokes the method with the arguments on the operand stack of a given frame, replacing them with the result.
+     */
+    void invoke(Machine machine, ExecutionFrame frame) throws TeleInterpreterException {
+        final Object[] boxedArguments = new Object[arguments.length];
+        for (int i = boxedArguments.length - 1; i >= 0; i--) {
+            boxedArguments[i] = arguments[i].pop(machine, frame);
+        }
+        Object receiver = null;
+        if (!isStatic) {
+            receiver = machine.makeLocalValue(frame.popReference()).asBoxedJavaValue();
+            if (receiver == null) {
+                throw machine.raiseException(new NullPointerException());
+            }
+        }
+        final Object boxedResult;
+        try {
+            boxedResult = javaMethod.invoke(receiver, boxedArguments);
+        } catch (InvocationTargetException e) {
+            throw machine.raiseException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw machine.raiseException(e);
+        }
+        result.push(machine, frame, boxedResult);
+    }
+
+    private static final ArgumentConverter BOOLEAN_ARGUMENT = new ArgumentConverter() {
+        @Override
+        Object pop(Machine machine, ExecutionFrame frame) {
+            return Boolean.valueOf(frame.popInt() != 0);
+        }
+    };
+
+    private static final ArgumentConverter BYTE_ARGUMENT = new ArgumentConverter() {
+        @Override
+        Object pop(Machine machine, ExecutionFrame frame) {
+            return Byte.valueOf((byte) frame.popInt());
+        }
+    };
+
+    private static final ArgumentConverter CHAR_ARGUMENT = new ArgumentConverter() {
+        @Override
+        Object pop(Machine machine, ExecutionFrame frame) {
+            return Character.valueOf((char) frame.popInt());
+        }
+    };
+
+    private static final ArgumentConverter SHORT_ARGUMENT = new ArgumentConverter() {
+        @Override
+        Object pop(Machine machine, ExecutionFrame frame) {
+            return Short.valueOf((short) frame.popInt());
+        }
+    };
+
+    private static final ArgumentConverter INT_ARGUMENT = new ArgumentConverter() {
+        @Override
+        Object pop(Machine machine, ExecutionFrame frame) {
+            return Integer.valueOf(frame.popInt());
+        }
+    };
+
+    private static final ArgumentConverter FLOAT_ARGUMENT = new ArgumentConverter() {
+        @Override
+        Object pop(Machine machine, ExecutionFrame frame) {
+            return Float.valueOf(frame.popFloat());
+        }
+    };
+
+    private static final ArgumentConverter LONG_ARGUMENT = new ArgumentConverter() {
+        @Override
+        Object pop(Machine machine, ExecutionFrame frame) {
+            return Long.valueOf(frame.popLong());
+        }
+    };
+
+    private static final ArgumentConverter DOUBLE_ARGUMENT = new ArgumentConverter() {
+        @Override
+        Object pop(Machine machine, ExecutionFrame frame) {
+            return Double.valueOf(frame.popDouble());
+        }
+    };
+
+    private static final ArgumentConverter REFERENCE_ARGUMENT = new ArgumentConverter() {
+        @Override
+        Object pop(Machine machine, ExecutionFrame frame) {
+            return machine.makeLocalValue(frame.popReference()).asBoxedJavaValue();
+        }
+    };
+
+    private static ArgumentConverter argumentConverter(Kind kind) {
+        switch (kind.asEnum) {
+            // Checkstyle: stop
+            case BOOLEAN: return BOOLEAN_ARGUMENT;
+            case BYTE:    return BYTE_ARGUMENT;
+            case CHAR:    return CHAR_ARGUMENT;
+            case SHORT:   return SHORT_ARGUMENT;
+            case INT:     return INT_ARGUMENT;
+            case FLOAT:   return FLOAT_ARGUMENT;
+            case LONG:    return LONG_ARGUMENT;
+            case DOUBLE:  return DOUBLE_ARGUMENT;
+            default:      return REFERENCE_ARGUMENT;
+            // Checkstyle: resume
+        }
+    }
+
+    private static final ResultConverter VOID_RESULT = new ResultConverter() {
+        @Override
+        void push(Machine machine, ExecutionFrame frame, Object result) {
+        }
+    };
+
+    private static final ResultConverter BOOLEAN_RESULT = new ResultConverter() {
+        @Override
+        void push(Machine machine, ExecutionFrame frame, Object result) {
+            frame.pushInt(((Boolean) result).booleanValue() ? 1 : 0);
+        }
+    };
+
+    private static final ResultConverter BYTE_RESULT = new ResultConverter() {
+        @Override
+        void push(Machine machine, ExecutionFrame frame, Object result) {
+            frame.pushInt(((Byte) result).byteValue());
+        }
+    };
+
+    private static final ResultConverter CHAR_RESULT = new ResultConverter() {
+        @Override
+        void push(Machine machine, ExecutionFrame frame, Object result) {
+            frame.pushInt(((Character) result).charValue());
+        }
+    };
+
+    private static final ResultConverter SHORT_RESULT = new ResultConverter() {
+        @Override
+        void push(Machine machine, ExecutionFrame frame, Object result) {
+            frame.pushInt(((Short) result).shortValue());
+        }
+    };
+
+    private static final ResultConverter INT_RESULT = new ResultConverter() {
+        @Override
+        void push(Machine machine, ExecutionFrame frame, Object result) {
+            frame.pushInt(((Integer) result).intValue());
+        }
+    };
+
+    private static final ResultConverter FLOAT_RESULT = new ResultConverter() {
+        @Override
+        void push(Machine machine, ExecutionFrame frame, Object result) {
+            frame.pushFloat(((Float) result).floatValue());
+        }
+    };
+
+    private static final ResultConverter LONG_RESULT = new ResultConverter() {
+        @Override
+        void push(Machine machine, ExecutionFrame frame, Object result) {
+            frame.pushLong(((Long) result).longValue());
+        }
+    };
+
+    private static final ResultConverter DOUBLE_RESULT = new ResultConverter() {
+        @Override
+        void push(Machine machine, ExecutionFrame frame, Object result) {
+            frame.pushDouble(((Double) result).doubleValue());
+        }
+    };
+
+    private static final ResultConverter WORD_RESULT = new ResultConverter() {
+        @Override
+        void push(Machine machine, ExecutionFrame frame, Object result) {
+            frame.pushReference(Kind.WORD.asValue(result));
+        }
+    };
+
+    private static final ResultConverter REFERENCE_RESULT = new ResultConverter() {
+        @Override
+        void push(Machine machine, ExecutionFrame frame, Object result) {
+            frame.pushReference(machine.toReferenceValue(Reference.fromJava(result)));
+        }
+    };
+
+    private static ResultConverter resultConverter(Kind kind) {
+        switch (kind.asEnum) {
+            // Checkstyle: stop
+            case VOID:    return VOID_RESULT;
+            case BOOLEAN: return BOOLEAN_RESULT;
+            case BYTE:    return BYTE_RESULT;
+            case CHAR:    return CHAR_RESULT;
+            case SHORT:   return SHORT_RESULT;
+            case INT:     return INT_RESULT;
+            case FLOAT:   return FLOAT_RESULT;
+            case LONG:    return LONG_RESULT;
+            case DOUBLE:  return DOUBLE_RESULT;
+            case WORD:    return WORD_RESULT;
+            default:      return REFERENCE_RESULT;
+            // Checkstyle: resume
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import static com.sun.cri.bytecode.Bytecodes.*;
+
+import com.sun.max.vm.actor.member.*;
+
+/**
+ * The second execution tier of an interpreter running without a remote VM. In that mode the classes being interpreted
+ * are also loaded in the host VM, so once a method has been interpreted often enough it is handed over to the host VM
+ * which executes the same bytecode with its own compiler. Calls to the method then go directly to the host VM through
+ * {@link MethodActor#invoke(com.sun.max.vm.value.Value...)}, the same path already taken for methods without bytecode.
+ * <p>
+ * A method stays in the interpreter if its bytecode uses anything the host VM cannot execute, if it is an initializer
+ * or if the host VM refuses to invoke it.
+ */
+final class HostedTier {
+
+    private HostedTier() {
+    }
+
+    /**
+     * The number of invocations after which a method is executed by the host VM. The hosted tier is disabled unless
+     * this is set to a non-negative value with the {@code max.interpreter.hostedTierThreshold} system property.
+     * Executions limited by an {@link ExecutionBudget} never use the hosted tier, as code run by the host VM cannot be
+     * charged to the budget or stopped by it.
+     */
+    static final int THRESHOLD = Integer.getInteger("max.interpreter.hostedTierThreshold", -1);
+
+    /**
+     * Counts an invocation of a given method and determines if it is to be executed by the host VM.
+     */
+    static boolean isHot(ClassMethodActor method) {
+        if (THRESHOLD < 0) {
+            return false;
+        }
+        final DecodedCode code = DecodedCode.of(method);
+        if (code.isHosted) {
+            return true;
+        }
+        // Lost updates to the counter only delay the transition
+        if (code.isNotHostable || ++code.invocations < THRESHOLD) {
+            return false;
+        }
+        if (isHostable(method, code)) {
+            code.isHosted = true;
+        } else {
+            code.isNotHostable = true;
+        }
+        return code.isHosted;
+    }
+
+    /**
+     * Returns a method to the interpreter after the host VM failed to execute it.
+     */
+    static void disable(ClassMethodActor method) {
+        final DecodedCode code = DecodedCode.of(method);
+        code.isNotHostable = true;
+        code.isHosted = false;
+    }
+
+    private static boolean isHostable(ClassMethodActor method, DecodedCode code) {
+        if (method.isInitializer()) {
+            return false;
+        }
+        for (int opcode : code.opcodes) {
+            // Opcodes beyond the JVM specification are only understood by the interpreter and the target VM.
+            // Superinstructions are excluded as they only replace sequences of standard instructions.
+            if (opcode > JSR_W && opcode < Superinstructions.LOAD_GETFIELD) {
+                return false;
+            }
+        }
+        try {
+            return method.toJava() != null;
+        } catch (Throwable throwable) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.actor.member.*;
+
+/**
+ * An inline cache for an {@code invokevirtual} or {@code invokeinterface} call site. It remembers the method referenced
+ * by the call site once it has been resolved and maps the most recently seen receiver types to the method selected
+ * for them. A site that has seen no more than {@link #MAX_RECEIVER_TYPES} receiver types is monomorphic or
+ * polymorphic and is dispatched by a short scan of the cached types. A site that sees more receiver types becomes
+ * megamorphic and thereafter always uses the full method lookup.
+ * <p>
+ * Caches are shared by all threads interpreting the method containing the call site. The cached receiver types are
+ * kept in an immutable {@link Entries} object that is replaced as a whole when a type is added, so lookups need no
+ * locking.
+ */
+final class InlineCache {
+
+    /**
+     * The maximum number of receiver types cached at a call site before it becomes megamorphic.
+     */
+    static final int MAX_RECEIVER_TYPES = 4;
+
+    /**
+     * Incremented to invalidate the receiver types cached by all inline caches.
+     */
+    private static volatile int generation;
+
+    private static final class Entries {
+        final int generation;
+        final ClassActor[] receiverTypes;
+        final ClassMethodActor[] targets;
+        final boolean isMegamorphic;
+
+        Entries(int generation, ClassActor[] receiverTypes, ClassMethodActor[] targets, boolean isMegamorphic) {
+            this.generation = generation;
+            this.receiverTypes = receiverTypes;
+            this.targets = targets;
+            this.isMegamorphic = isMegamorphic;
+        }
+    }
+
+    private static final ClassActor[] NO_RECEIVER_TYPES = {};
+    private static final ClassMethodActor[] NO_TARGETS = {};
+
+    private volatile Entries entries = new Entries(generation, NO_RECEIVER_TYPES, NO_TARGETS, false);
+
+    private volatile MethodActor method;
+    private int receiverDepth;
+
+    /**
+     * Gets the method referenced by this call site, resolving it if necessary.
+     *
+     * @param machine the machine whose current frame contains this call site
+     * @param cpIndex the constant pool index of the method reference
+     */
+    MethodActor method(Machine machine, int cpIndex) {
+        MethodActor method = this.method;
+        if (method == null) {
+            method = machine.resolveMethod(cpIndex);
+            receiverDepth = ArgumentLayout.of(method).slots - 1;
+            this.method = method;
+        }
+        return method;
+    }
+
+    /**
+     * Gets the number of operand stack slots above the receiver of a call through this site. This must only be called
+     * after {@link #method(Machine, int)}.
+     */
+    int receiverDepth() {
+        return receiverDepth;
+    }
+
+    /**
+     * Gets the method cached for a given receiver type.
+     *
+     * @return the cached method or {@code null} if this cache has no entry for {@code receiverType}
+     */
+    ClassMethodActor lookup(ClassActor receiverType) {
+        final Entries entries = this.entries;
+        if (entries.generation == generation) {
+            final ClassActor[] receiverTypes = entries.receiverTypes;
+            for (int i = 0; i < receiverTypes.length; i++) {
+                if (receiverTypes[i] == receiverType) {
+                    return entries.targets[i];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records the method selected for a given receiver type. Callers should first check {@link #isMegamorphic()} so
+     * that megamorphic sites do not contend for the lock.
+     */
+    synchronized void record(ClassActor receiverType, ClassMethodActor target) {
+        final int currentGeneration = generation;
+        Entries entries = this.entries;
+        if (entries.generation != currentGeneration) {
+            entries = new Entries(currentGeneration, NO_RECEIVER_TYPES, NO_TARGETS, false);
+        }
+        if (entries.isMegamorphic) {
+            return;
+        }
+        final int length = entries.receiverTypes.length;
+        for (int i = 0; i < length; i++) {
+            if (entries.receiverTypes[i] == receiverType) {
+                return;
+            }
+        }
+        if (length == MAX_RECEIVER_TYPES) {
+            this.entries = new Entries(currentGeneration, NO_RECEIVER_TYPES, NO_TARGETS, true);
+            return;
+        }
+        final ClassActor[] receiverTypes = new ClassActor[length + 1];
+        final ClassMethodActor[] targets = new ClassMethodActor[length + 1];
+        System.arraycopy(entries.receiverTypes, 0, receiverTypes, 0, length);
+        System.arraycopy(entries.targets, 0, targets, 0, length);
+        receiverTypes[length] = receiverType;
+        targets[length] = target;
+        this.entries = new Entries(currentGeneration, receiverTypes, targets, false);
+    }
+
+    /**
+     * Determines if this call site has seen too many receiver types to be cached.
+     */
+    boolean isMegamorphic() {
+        final Entries entries = this.entries;
+        return entries.generation == generation && entries.isMegamorphic;
+    }
+
+    /**
+     * Discards the receiver types cached at every call site. This must be called if the methods selected for a
+     * receiver type may have changed, for example after a class has been redefined.
+     */
+    static synchronized void invalidateAll() {
+        generation++;
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import java.io.*;
+import java.util.*;
+
+import com.sun.max.vm.actor.member.*;
+
+/**
+ * A profile of the execution of one or more methods by the {@linkplain TeleInterpreter interpreter}. It records:
+ * <ul>
+ * <li>the number of times each opcode was executed,</li>
+ * <li>the number of invocations of each method along with the time spent in the method including and excluding the
+ * time spent in its callees,</li>
+ * <li>the number of values read from a remote VM and the number of requests made to the VM to read them,</li>
+ * <li>the number of remote strings found in and missing from the cache of their local copies,</li>
+ * <li>the number of exceptions of each type dispatched by the interpreter, and</li>
+ * <li>the number of instructions executed in each distinct call stack.</li>
+ * </ul>
+ * A profile can be exported {@linkplain #writeCSV(PrintStream) as CSV}, {@linkplain #writeJSON(PrintStream) as JSON}
+ * and as {@linkplain #writeFoldedStacks(PrintStream) folded stacks} from which a flame graph can be generated.
+ * <p>
+ * An interpreter only profiles its execution if it was created with a profile. It then runs a separate copy of its
+ * interpreter loop that does the profiling, leaving the normal loop unchanged.
+ * <p>
+ * A profile may accumulate the results of several executions but must not be used by more than one interpreter at a
+ * time.
+ */
+public final class InterpreterProfile {
+
+    /**
+     * The statistics gathered for a single method.
+     */
+    public static final class MethodStatistics {
+        private long invocations;
+        private long inclusiveNanos;
+        private long exclusiveNanos;
+
+        public long invocations() {
+            return invocations;
+        }
+
+        /**
+         * Gets the total time spent in the method and its interpreted callees. The time spent in a recursive
+         * invocation is counted once for each activation of the method that it is nested within.
+         */
+        public long inclusiveNanos() {
+            return inclusiveNanos;
+        }
+
+        /**
+         * Gets the total time spent in the method excluding its interpreted callees.
+         */
+        public long exclusiveNanos() {
+            return exclusiveNanos;
+        }
+    }
+
+    private final long[] opcodeCounts = new long[Superinstructions.LIMIT];
+    private final Map<ClassMethodActor, MethodStatistics> methods = new HashMap<ClassMethodActor, MethodStatistics>();
+    private final Map<String, Long> exceptions = new TreeMap<String, Long>();
+    private final Map<String, Long> stacks = new HashMap<String, Long>();
+    private long remoteReads;
+    private long remoteFetches;
+    private long remoteBytesFetched;
+    private long stringCacheHits;
+    private long stringCacheMisses;
+
+    // The state of the call stack being profiled, indexed by frame depth
+    private MethodStatistics[] activeMethods = new MethodStatistics[16];
+    private long[] entryTimes = new long[16];
+    private String[] stackKeys = new String[16];
+    private long instructionsInFrame;
+    private long lastTransferTime;
+
+    public InterpreterProfile() {
+    }
+
+    private MethodStatistics statisticsFor(ClassMethodActor method) {
+        MethodStatistics statistics = methods.get(method);
+        if (statistics == null) {
+            statistics = new MethodStatistics();
+            methods.put(method, statistics);
+        }
+        return statistics;
+    }
+
+    private static String nameOf(ClassMethodActor method) {
+        return method.format("%H.%n");
+    }
+
+    private void ensureCapacity(int depth) {
+        if (depth >= activeMethods.length) {
+            final int length = Math.max(depth + 1, activeMethods.length * 2);
+            activeMethods = Arrays.copyOf(activeMethods, length);
+            entryTimes = Arrays.copyOf(entryTimes, length);
+            stackKeys = Arrays.copyOf(stackKeys, length);
+        }
+    }
+
+    /**
+     * Records the start of interpretation with a given frame as the outermost frame.
+     */
+    void start(ExecutionFrame frame) {
+        final long now = System.nanoTime();
+        final int depth = frame.depth();
+        ensureCapacity(depth);
+        final StringBuilder key = new StringBuilder();
+        for (ExecutionFrame f = frame; f != null; f = f.callersFrame()) {
+            key.insert(0, nameOf(f.method())).insert(0, f.callersFrame() == null ? "" : ";");
+        }
+        activeMethods[depth] = statisticsFor(frame.method());
+        activeMethods[depth].invocations++;
+        entryTimes[depth] = now;
+        stackKeys[depth] = key.toString();
+        instructionsInFrame = 0;
+        lastTransferTime = now;
+    }
+
+    /**
+     * Records the execution of an instruction.
+     */
+    void executed(int opcode) {
+        opcodeCounts[opcode]++;
+        instructionsInFrame++;
+    }
+
+    /**
+     * Records the invocation of a method. This includes invocations of methods that are not interpreted.
+     */
+    void invoked(ClassMethodActor method) {
+        statisticsFor(method).invocations++;
+    }
+
+    /**
+     * Records a change of the current frame from {@code from} to {@code to}, which is {@code null} if interpretation
+     * has completed. The change is either a call from {@code from} to {@code to} or a return or exception unwinding from
+     * {@code from} to one of its callers.
+     */
+    void transfer(ExecutionFrame from, ExecutionFrame to) {
+        final long now = System.nanoTime();
+        final int fromDepth = from.depth();
+        activeMethods[fromDepth].exclusiveNanos += now - lastTransferTime;
+        lastTransferTime = now;
+        flushInstructions(fromDepth);
+
+        if (to != null && to.callersFrame() == from) {
+            final int depth = fromDepth + 1;
+            ensureCapacity(depth);
+            // The invocation itself was recorded by invoked()
+            activeMethods[depth] = statisticsFor(to.method());
+            entryTimes[depth] = now;
+            stackKeys[depth] = stackKeys[fromDepth] + ";" + nameOf(to.method());
+        } else {
+            final int toDepth = to == null ? 0 : to.depth();
+            for (int depth = fromDepth; depth > toDepth; depth--) {
+                activeMethods[depth].inclusiveNanos += now - entryTimes[depth];
+                activeMethods[depth] = null;
+            }
+        }
+    }
+
+    private void flushInstructions(int depth) {
+        if (instructionsInFrame != 0) {
+            final String key = stackKeys[depth];
+            final Long count = stacks.get(key);
+            stacks.put(key, count == null ? instructionsInFrame : count + instructionsInFrame);
+            instructionsInFrame = 0;
+        }
+    }
+
+    /**
+     * Records the dispatch of an exception by the interpreter.
+     */
+    void exceptionDispatched(Class throwableType) {
+        final String name = throwableType.getName();
+        final Long count = exceptions.get(name);
+        exceptions.put(name, count == null ? 1L : count + 1);
+    }
+
+    /**
+     * Records the reading of a value from a remote VM.
+     */
+    void remoteRead() {
+        remoteReads++;
+    }
+
+    /**
+     * Records a request to a remote VM to read a block of its memory.
+     */
+    void remoteFetch(int size) {
+        remoteFetches++;
+        remoteBytesFetched += size;
+    }
+
+    /**
+     * Records a remote string whose local copy was found in the cache.
+     */
+    void stringCacheHit() {
+        stringCacheHits++;
+    }
+
+    /**
+     * Records a remote string whose local copy had to be decoded from the VM.
+     */
+    void stringCacheMiss() {
+        stringCacheMisses++;
+    }
+
+    /**
+     * Gets the number of times a given opcode or {@linkplain Superinstructions superinstruction} was executed.
+     */
+    public long opcodeCount(int opcode) {
+        return opcodeCounts[opcode];
+    }
+
+    /**
+     * Gets the statistics gathered for each method invoked.
+     */
+    public Map<ClassMethodActor, MethodStatistics> methods() {
+        return Collections.unmodifiableMap(methods);
+    }
+
+    public long remoteReads() {
+        return remoteReads;
+    }
+
+    public long remoteFetches() {
+        return remoteFetches;
+    }
+
+    public long remoteBytesFetched() {
+        return remoteBytesFetched;
+    }
+
+    public long stringCacheHits() {
+        return stringCacheHits;
+    }
+
+    public long stringCacheMisses() {
+        return stringCacheMisses;
+    }
+
+    /**
+     * Gets the number of exceptions of each type dispatched by the interpreter, keyed by class name.
+     */
+    public Map<String, Long> exceptions() {
+        return Collections.unmodifiableMap(exceptions);
+    }
+
+    /**
+     * Writes this profile as CSV. Each row has the columns {@code category,name,count,inclusiveNanos,exclusiveNanos}
+     * where the category is one of {@code opcode}, {@code method}, {@code exception} or {@code remote}. The times are
+     * empty for all rows except methods.
+     */
+    public void writeCSV(PrintStream out) {
+        out.println("category,name,count,inclusiveNanos,exclusiveNanos");
+        for (int opcode = 0; opcode < opcodeCounts.length; opcode++) {
+            if (opcodeCounts[opcode] != 0) {
+                out.println("opcode," + Superinstructions.nameOf(opcode) + "," + opcodeCounts[opcode] + ",,");
+            }
+        }
+        for (Map.Entry<ClassMethodActor, MethodStatistics> entry : methods.entrySet()) {
+            final MethodStatistics statistics = entry.getValue();
+            out.println("method,\"" + entry.getKey().format("%H.%n(%p)") + "\"," + statistics.invocations + "," + statistics.inclusiveNanos + "," + statistics.exclusiveNanos);
+        }
+        for (Map.Entry<String, Long> entry : exceptions.entrySet()) {
+            out.println("exception," + entry.getKey() + "," + entry.getValue() + ",,");
+        }
+        out.println("remote,reads," + remoteReads + ",,");
+        out.println("remote,fetches," + remoteFetches + ",,");
+        out.println("remote,bytesFetched," + remoteBytesFetched + ",,");
+        out.println("remote,stringCacheHits," + stringCacheHits + ",,");
+        out.println("remote,stringCacheMisses," + stringCacheMisses + ",,");
+    }
+
+    /**
+     * Writes this profile as a JSON object.
+     */
+    public void writeJSON(PrintStream out) {
+        out.println("{");
+        out.println("  \"opcodes\": {");
+        String separator = "";
+        for (int opcode = 0; opcode < opcodeCounts.length; opcode++) {
+            if (opcodeCounts[opcode] != 0) {
+                out.print(separator + "    " + quote(Superinstructions.nameOf(opcode)) + ": " + opcodeCounts[opcode]);
+                separator = ",\n";
+            }
+        }
+        out.println();
+        out.println("  },");
+        out.println("  \"methods\": [");
+        separator = "";
+        for (Map.Entry<ClassMethodActor, MethodStatistics> entry : methods.entrySet()) {
+            final MethodStatistics statistics = entry.getValue();
+            out.print(separator + "    {\"name\": " + quote(entry.getKey().format("%H.%n(%p)")) +
+                      ", \"invocations\": " + statistics.invocations +
+                      ", \"inclusiveNanos\": " + statistics.inclusiveNanos +
+                      ", \"exclusiveNanos\": " + statistics.exclusiveNanos + "}");
+            separator = ",\n";
+        }
+        out.println();
+        out.println("  ],");
+        out.println("  \"exceptions\": {");
+        separator = "";
+        for (Map.Entry<String, Long> entry : exceptions.entrySet()) {
+            out.print(separator + "    " + quote(entry.getKey()) + ": " + entry.getValue());
+            separator = ",\n";
+        }
+        out.println();
+        out.println("  },");
+        out.println("  \"remote\": {\"reads\": " + remoteReads + ", \"fetches\": " + remoteFetches + ", \"bytesFetched\": " + remoteBytesFetched +
+                    ", \"stringCacheHits\": " + stringCacheHits + ", \"stringCacheMisses\": " + stringCacheMisses + "}");
+        out.println("}");
+    }
+
+    private static String quote(String s) {
+        final StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Writes the number of instructions executed in each distinct interpreted call stack in the folded format read by
+     * flame graph tools: one line per stack with the frames from outermost to innermost separated by {@code ';'},
+     * followed by a space and the count.
+     */
+    public void writeFoldedStacks(PrintStream out) {
+        for (Map.Entry<String, Long> entry : stacks.entrySet()) {
+            out.println(entry.getKey() + " " + entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import java.util.*;
+
+import com.sun.max.lang.*;
+import com.sun.max.tele.reference.*;
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.reference.*;
+import com.sun.max.vm.value.*;
+
+/**
+ * Intrinsic implementations of frequently called JDK methods. Instead of interpreting the bytecode of such a method
+ * or invoking it reflectively, the interpreter applies the operation directly to the values on the operand stack.
+ * Remote strings and primitive arrays are read from the VM with as few requests as possible; for example, a
+ * {@link System#arraycopy} from a remote array reads the copied range as a single block.
+ */
+final class Intrinsics {
+
+    private Intrinsics() {
+    }
+
+    /**
+     * The implementation of an intrinsic method.
+     */
+    abstract static class Intrinsic {
+
+        /**
+         * Executes the method with its arguments on the operand stack of a given frame, replacing them with the result.
+         * Exceptions raised by the method are thrown as host exceptions.
+         *
+         * @return {@code false} if the arguments cannot be handled by the intrinsic, in which case they are left on the
+         *         operand stack and the method must be invoked in the normal way
+         */
+        abstract boolean execute(Machine machine, ExecutionFrame frame);
+    }
+
+    /**
+     * Denotes a remote object that has no local copy.
+     */
+    private static final Object REMOTE = new Object();
+
+    /**
+     * Gets the local object denoted by a reference value, copying it from the VM if it is a remote string or
+     * primitive array.
+     *
+     * @return {@link #REMOTE} if the value denotes a remote object that cannot be copied
+     */
+    private static Object localCopy(Machine machine, Value value) {
+        if (value.isZero()) {
+            return null;
+        }
+        final Reference reference = value.asReference();
+        if (reference instanceof TeleReference && !((TeleReference) reference).isLocal()) {
+            final Reference localReference = machine.makeLocalReference((TeleReference) reference);
+            return localReference == reference ? REMOTE : localReference.toJava();
+        }
+        return reference.toJava();
+    }
+
+    /**
+     * Gets the local object denoted by a reference value, which is the local copy of a remote array that has been
+     * copied.
+     *
+     * @return {@link #REMOTE} if the value denotes a remote object
+     */
+    private static Object local(Machine machine, Value value) {
+        if (value.isZero()) {
+            return null;
+        }
+        final Reference reference = machine.readableArray(value.asReference());
+        return Machine.isRemote(reference) ? REMOTE : reference.toJava();
+    }
+
+    /**
+     * Gets the local object denoted by a reference value that is to be written, copying it from the VM if it is a
+     * remote primitive array.
+     *
+     * @return {@link #REMOTE} if the value denotes a remote object that cannot be copied
+     */
+    private static Object writable(Machine machine, Value value) {
+        if (value.isZero()) {
+            return null;
+        }
+        final Reference reference = machine.writableArray(value.asReference());
+        return Machine.isRemote(reference) ? REMOTE : reference.toJava();
+    }
+
+    private static final Map<ClassMethodActor, Intrinsic> intrinsics = new IdentityHashMap<ClassMethodActor, Intrinsic>();
+
+    private static void register(Class holder, String name, Class[] parameterTypes, Intrinsic intrinsic) {
+        intrinsics.put((ClassMethodActor) MethodActor.fromJava(Classes.getDeclaredMethod(holder, name, parameterTypes)), intrinsic);
+    }
+
+    /**
+     * Gets the intrinsic implementation of a given method.
+     *
+     * @return {@code null} if {@code method} is not an intrinsic
+     */
+    static Intrinsic get(ClassMethodActor method) {
+        return intrinsics.get(method);
+    }
+
+    static {
+        registerStringIntrinsics();
+        registerMathIntrinsics();
+        registerArrayIntrinsics();
+
+        register(Integer.class, "valueOf", new Class[] {int.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                frame.pushReference(machine.toReferenceValue(Reference.fromJava(Integer.valueOf(frame.popInt()))));
+                return true;
+            }
+        });
+        register(Object.class, "hashCode", new Class[0], new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                final Object receiver = local(machine, frame.peekReference(0));
+                if (receiver == REMOTE) {
+                    // The identity hash code of a remote object is only known to the VM
+                    return false;
+                }
+                frame.popReference();
+                frame.pushInt(System.identityHashCode(receiver));
+                return true;
+            }
+        });
+    }
+
+    private static void registerStringIntrinsics() {
+        register(String.class, "equals", new Class[] {Object.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                final Object receiver = localCopy(machine, frame.peekReference(1));
+                if (receiver == REMOTE) {
+                    return false;
+                }
+                final Object other = localCopy(machine, frame.peekReference(0));
+                frame.discard(2);
+                frame.pushInt(other != REMOTE && ((String) receiver).equals(other) ? 1 : 0);
+                return true;
+            }
+        });
+        register(String.class, "hashCode", new Class[0], new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                final Object receiver = localCopy(machine, frame.peekReference(0));
+                if (receiver == REMOTE) {
+                    return false;
+                }
+                frame.popReference();
+                frame.pushInt(((String) receiver).hashCode());
+                return true;
+            }
+        });
+        register(String.class, "length", new Class[0], new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                final Object receiver = localCopy(machine, frame.peekReference(0));
+                if (receiver == REMOTE) {
+                    return false;
+                }
+                frame.popReference();
+                frame.pushInt(((String) receiver).length());
+                return true;
+            }
+        });
+        register(String.class, "charAt", new Class[] {int.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                final Object receiver = localCopy(machine, frame.peekReference(1));
+                if (receiver == REMOTE) {
+                    return false;
+                }
+                final int index = frame.popInt();
+                frame.popReference();
+                frame.pushInt(((String) receiver).charAt(index));
+                return true;
+            }
+        });
+    }
+
+    private static void registerMathIntrinsics() {
+        register(Math.class, "abs", new Class[] {int.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                frame.pushInt(Math.abs(frame.popInt()));
+                return true;
+            }
+        });
+        register(Math.class, "abs", new Class[] {long.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                frame.pushLong(Math.abs(frame.popLong()));
+                return true;
+            }
+        });
+        register(Math.class, "abs", new Class[] {double.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                frame.pushDouble(Math.abs(frame.popDouble()));
+                return true;
+            }
+        });
+        register(Math.class, "sqrt", new Class[] {double.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                frame.pushDouble(Math.sqrt(frame.popDouble()));
+                return true;
+            }
+        });
+        register(Math.class, "min", new Class[] {int.class, int.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                final int b = frame.popInt();
+                frame.pushInt(Math.min(frame.popInt(), b));
+                return true;
+            }
+        });
+        register(Math.class, "max", new Class[] {int.class, int.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                final int b = frame.popInt();
+                frame.pushInt(Math.max(frame.popInt(), b));
+                return true;
+            }
+        });
+        register(Math.class, "min", new Class[] {long.class, long.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                final long b = frame.popLong();
+                frame.pushLong(Math.min(frame.popLong(), b));
+                return true;
+            }
+        });
+        register(Math.class, "max", new Class[] {long.class, long.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                final long b = frame.popLong();
+                frame.pushLong(Math.max(frame.popLong(), b));
+                return true;
+            }
+        });
+    }
+
+    private static void registerArrayIntrinsics() {
+        register(System.class, "arraycopy", new Class[] {Object.class, int.class, Object.class, int.class, int.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                final Value sourceValue = frame.peekReference(4);
+                final Value destinationValue = frame.peekReference(2);
+                final Object destination = writable(machine, destinationValue);
+                if (destination == REMOTE) {
+                    return false;
+                }
+                final int length = frame.popInt();
+                final int destinationPosition = frame.popInt();
+                frame.popReference();
+                final int sourcePosition = frame.popInt();
+                frame.popReference();
+
+                final Object source = local(machine, sourceValue);
+                if (source != REMOTE) {
+                    System.arraycopy(source, sourcePosition, destination, destinationPosition, length);
+                    return true;
+                }
+                final Object range = machine.readRemoteArray((TeleReference) sourceValue.asReference(), sourcePosition, length);
+                if (range == null) {
+                    frame.pushReference(sourceValue);
+                    frame.pushInt(sourcePosition);
+                    frame.pushReference(destinationValue);
+                    frame.pushInt(destinationPosition);
+                    frame.pushInt(length);
+                    return false;
+                }
+                System.arraycopy(range, 0, destination, destinationPosition, length);
+                return true;
+            }
+        });
+        register(Arrays.class, "fill", new Class[] {int[].class, int.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                final Object array = writable(machine, frame.peekReference(1));
+                if (array == REMOTE) {
+                    return false;
+                }
+                final int value = frame.popInt();
+                frame.popReference();
+                Arrays.fill((int[]) array, value);
+                return true;
+            }
+        });
+        register(Arrays.class, "fill", new Class[] {char[].class, char.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                final Object array = writable(machine, frame.peekReference(1));
+                if (array == REMOTE) {
+                    return false;
+                }
+                final int value = frame.popInt();
+                frame.popReference();
+                Arrays.fill((char[]) array, (char) value);
+                return true;
+            }
+        });
+        register(Arrays.class, "fill", new Class[] {byte[].class, byte.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                final Object array = writable(machine, frame.peekReference(1));
+                if (array == REMOTE) {
+                    return false;
+                }
+                final int value = frame.popInt();
+                frame.popReference();
+                Arrays.fill((byte[]) array, (byte) value);
+                return true;
+            }
+        });
+        register(Arrays.class, "fill", new Class[] {long[].class, long.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                final Object array = writable(machine, frame.peekReference(2));
+                if (array == REMOTE) {
+                    return false;
+                }
+                final long value = frame.popLong();
+                frame.popReference();
+                Arrays.fill((long[]) array, value);
+                return true;
+            }
+        });
+        register(Arrays.class, "fill", new Class[] {Object[].class, Object.class}, new Intrinsic() {
+            @Override
+            boolean execute(Machine machine, ExecutionFrame frame) {
+                final Object array = writable(machine, frame.peekReference(1));
+                final Object value = local(machine, frame.peekReference(0));
+                if (array == REMOTE || value == REMOTE) {
+                    return false;
+                }
+                frame.discard(2);
+                Arrays.fill((Object[]) array, value);
+                return true;
+            }
+        });
+    }
+}
@@ -21,6 +21,7 @@
 package com.sun.max.tele.interpreter;
 
 import java.lang.reflect.*;
+import java.nio.*;
 import java.util.*;
 
 import com.sun.max.lang.*;
@@ -33,7 +34,6 @@ import com.sun.max.unsafe.*;
 import com.sun.max.vm.actor.holder.*;
 import com.sun.max.vm.actor.member.*;
 import com.sun.max.vm.bytecode.graft.*;
-import com.sun.max.vm.classfile.constant.*;
 import com.sun.max.vm.layout.*;
 import com.sun.max.vm.reference.*;
 import com.sun.max.vm.type.*;
@@ -48,6 +48,33 @@ import com.sun.max.vm.value.*;
 public final class Machine extends AbstractTeleVMHolder{
 
     private ExecutionThread currentThread;
+    private final List<ExecutionThread> threads = new ArrayList<ExecutionThread>();
+    private final MonitorTable monitors = new MonitorTable();
+    private RemoteMemoryCache remoteMemory;
+    private final Map<ClassActor, Reference> remoteStaticTuples = new HashMap<ClassActor, Reference>();
+
+    /**
+     * Local copies of remote primitive arrays, keyed by the origin of the remote array. A remote array is read an
+     * element at a time through the {@linkplain RemoteMemoryCache cache}, which fetches it in blocks as it is scanned.
+     * It is copied in its entirety only when it is first written or passed to code running in the host VM, after which
+     * the copy stands in for the remote array for the rest of the execution.
+     */
+    private final Map<Long, Object> remoteArrayCopies = new HashMap<Long, Object>();
+
+    /**
+     * The lengths of the remote arrays accessed, keyed by the origin of the array.
+     */
+    private final Map<Long, Integer> remoteArrayLengths = new HashMap<Long, Integer>();
+
+    /**
+     * The profile in which execution is recorded or {@code null} if execution is not being profiled.
+     */
+    InterpreterProfile profile;
+
+    /**
+     * The budget charged with the execution on this machine or {@code null} if execution is not limited.
+     */
+    private ExecutionBudget budget;
 
     Machine(TeleVM vm) {
         super(vm);
@@ -64,11 +91,72 @@ public final class Machine extends AbstractTeleVMHolder{
         }
     }
 
+    /**
+     * Sets the profile in which execution on this machine is recorded.
+     *
+     * @param profile the profile to update or {@code null} if execution is not to be profiled
+     */
+    void setProfile(InterpreterProfile profile) {
+        this.profile = profile;
+        if (remoteMemory != null) {
+            remoteMemory.profile = profile;
+        }
+    }
+
+    ExecutionBudget budget() {
+        return budget;
+    }
+
+    /**
+     * Sets the budget charged with the execution on this machine.
+     *
+     * @param budget the budget or {@code null} if execution is not to be limited
+     */
+    void setBudget(ExecutionBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Charges an allocation about to be made by the current instruction to the budget, if any. If the budget is
+     * exhausted, the current instruction is {@linkplain ExecutionFrame#rewind() rewound} so that a resumed run executes
+     * it again. The instruction must therefore not have changed the operand stack before calling this.
+     *
+     * @throws ExecutionBudget.Exhausted if the budget is exhausted or has been cancelled
+     */
+    void allocated(long size) {
+        if (budget != null) {
+            try {
+                budget.chargeAllocation(size);
+            } catch (ExecutionBudget.Exhausted exhausted) {
+                currentThread.frame().rewind();
+                throw exhausted;
+            }
+        }
+    }
+
+    /**
+     * Prepares this machine for executing another method by discarding the threads, monitors, budget and profile of
+     * the last execution. The caches of remote VM state are retained.
+     */
+    void reset() {
+        final ExecutionThread mainThread = threads.get(0);
+        mainThread.reset();
+        threads.clear();
+        threads.add(mainThread);
+        activate(mainThread);
+        monitors.clear();
+        remoteArrayCopies.clear();
+        remoteArrayLengths.clear();
+        setBudget(null);
+        setProfile(null);
+    }
+
     public ExecutionFrame pushFrame(ClassMethodActor method) {
         return currentThread.pushFrame(method);
     }
 
     public ExecutionFrame popFrame() {
+        exitMonitor(currentThread.frame().monitor);
         return currentThread.popFrame();
     }
 
@@ -78,7 +166,97 @@ public final class Machine extends AbstractTeleVMHolder{
     }
 
     public ExecutionThread newThread(int prio, ExecutionThread.ThreadType threadType) {
-        return new ExecutionThread(prio, threadType);
+        final ExecutionThread thread = new ExecutionThread(prio, threadType);
+        threads.add(thread);
+        return thread;
+    }
+
+    /**
+     * Activates the next thread after the current one that has frames and is not blocked on a monitor. The current
+     * thread is chosen again only if no other thread can run.
+     *
+     * @return {@code false} if no thread can run
+     */
+    boolean scheduleNext() {
+        final int count = threads.size();
+        final int current = threads.indexOf(currentThread);
+        for (int i = 1; i <= count; i++) {
+            final ExecutionThread thread = threads.get((current + i) % count);
+            if (thread.frame() != null && (thread.blockedOn == null || monitors.isAvailable(thread.blockedOn, thread))) {
+                activate(thread);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the threads that still have frames.
+     */
+    List<ExecutionThread> liveThreads() {
+        final List<ExecutionThread> liveThreads = new ArrayList<ExecutionThread>();
+        for (ExecutionThread thread : threads) {
+            if (thread.frame() != null) {
+                liveThreads.add(thread);
+            }
+        }
+        return liveThreads;
+    }
+
+    /**
+     * Ends a thread, discarding any frames left by an uncaught exception and releasing the monitors it still holds.
+     */
+    void terminate(ExecutionThread thread) {
+        monitors.releaseAll(thread);
+        thread.reset();
+    }
+
+    /**
+     * Gets the object identifying the monitor of a given object in the {@linkplain MonitorTable monitor table}.
+     */
+    private static Object monitorFor(Reference object) {
+        if (object instanceof TeleReference && !((TeleReference) object).isLocal()) {
+            return object;
+        }
+        return object.toJava();
+    }
+
+    /**
+     * Acquires the monitor of a given object for the current thread.
+     *
+     * @return {@code false} if the monitor is owned by another thread, in which case the current thread is now blocked
+     *         on it
+     */
+    public boolean monitorEnter(Reference object) {
+        return monitorEnter(monitorFor(object));
+    }
+
+    private boolean monitorEnter(Object monitor) {
+        if (monitors.enter(monitor, currentThread)) {
+            currentThread.blockedOn = null;
+            return true;
+        }
+        currentThread.blockedOn = monitor;
+        return false;
+    }
+
+    private void exitMonitor(Object monitor) {
+        if (monitor != null) {
+            monitors.exit(monitor, currentThread);
+        }
+    }
+
+    /**
+     * Releases the monitor of a given object once on behalf of the current thread.
+     */
+    public void monitorExit(Reference object) throws TeleInterpreterException {
+        if (!monitors.exit(monitorFor(object), currentThread)) {
+            raiseException(new IllegalMonitorStateException());
+        }
+    }
+
+    ExecutionFrame frame() {
+        return currentThread.frame();
     }
 
     public MethodActor currentMethod() {
@@ -89,8 +267,18 @@ public final class Machine extends AbstractTeleVMHolder{
         return currentThread;
     }
 
-    public void jump(int offset) {
-        currentThread.frame().jump(offset);
+    /**
+     * Transfers control to a given instruction in the current frame. A backward jump is charged to the budget, if any,
+     * after it is taken so that a run stopped here resumes at the target.
+     *
+     * @throws ExecutionBudget.Exhausted if the budget is exhausted or has been cancelled
+     */
+    public void jump(int targetIndex) {
+        final ExecutionFrame frame = currentThread.frame();
+        frame.jump(targetIndex);
+        if (budget != null && targetIndex <= frame.currentIndex()) {
+            budget.chargeInstructions(frame.currentIndex() - targetIndex + 1);
+        }
     }
 
     public int readOpcode() {
@@ -101,45 +289,35 @@ public final class Machine extends AbstractTeleVMHolder{
         currentThread.frame().setLocal(index, value);
     }
 
-    public Value getLocal(int index) {
-        return currentThread.frame().getLocal(index);
-    }
-
     public void push(Value value) {
-        currentThread.frame().stack().push(value);
-    }
-
-    public Value pop() {
-        return currentThread.frame().stack().pop();
-    }
-
-    public Value peek() {
-        return currentThread.frame().stack().peek();
+        currentThread.frame().push(value);
     }
 
-    public Value peek(int n) {
-        final Stack<Value> operands = currentThread.frame().stack();
-        return operands.elementAt(operands.size() - n);
+    public Value pop(Kind kind) {
+        return currentThread.frame().pop(kind);
     }
 
-    public byte readByte() {
-        return currentThread.frame().readByte();
+    /**
+     * Gets the reference or word value on the operand stack that is {@code depth} slots below the top slot.
+     */
+    public Value peekReference(int depth) {
+        return currentThread.frame().peekReference(depth);
     }
 
-    public short readShort() {
-        return currentThread.frame().readShort();
+    public int operand() {
+        return currentThread.frame().operand();
     }
 
-    public int readInt() {
-        return currentThread.frame().readInt();
+    public int operand2() {
+        return currentThread.frame().operand2();
     }
 
-    public void skipBytes(int n) {
-        currentThread.frame().skipBytes(n);
+    public DecodedCode.Switch switchTable() {
+        return currentThread.frame().switchTable();
     }
 
-    public void alignInstructionPosition() {
-        currentThread.frame().alignInstructionPosition();
+    public InlineCache inlineCache() {
+        return currentThread.frame().inlineCache();
     }
 
     public Value widenIfNecessary(Value value) {
@@ -179,12 +357,35 @@ public final class Machine extends AbstractTeleVMHolder{
         }
     }
 
+    /**
+     * Carries an exception thrown by the interpreted code or raised by the interpreter on its behalf to the
+     * interpreter's main loop, where it is dispatched to a handler in the interpreted call stack. This object has no
+     * stack trace of its own. The {@link TeleInterpreterException} describing the interpreted call stack is only
+     * created if no handler is found, so exceptions that are caught by the interpreted code cost little more than the
+     * allocation of the exception itself.
+     */
+    static final class ThrownException extends RuntimeException {
+
+        final Throwable throwable;
+        final ReferenceValue throwableReference;
+
+        ThrownException(Throwable throwable) {
+            this.throwable = throwable;
+            this.throwableReference = ReferenceValue.from(throwable);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
     public TeleInterpreterException raiseException(ReferenceValue throwableReference) throws TeleInterpreterException {
-        throw new TeleInterpreterException(toThrowable(vm(), throwableReference), this);
+        throw new ThrownException(toThrowable(vm(), throwableReference));
     }
 
     public TeleInterpreterException raiseException(Throwable throwable) throws TeleInterpreterException {
-        throw new TeleInterpreterException(throwable, this);
+        throw new ThrownException(throwable);
     }
 
     /**
@@ -196,7 +397,13 @@ public final class Machine extends AbstractTeleVMHolder{
      * @return {@code true} if an appropriate exception handler was found, {@code false} otherwise
      */
     public boolean handleException(ReferenceValue throwableReference) {
+        final ExecutionFrame frame = currentThread.frame();
         if (currentThread.handleException(throwableReference.getClassActor())) {
+            // Release the monitors of the synchronized methods unwound to reach the handler
+            for (ExecutionFrame f = frame; f != currentThread.frame(); f = f.callersFrame()) {
+                exitMonitor(f.monitor);
+            }
+            currentThread.frame().clearStack();
             push(throwableReference);
             return true;
         }
@@ -204,89 +411,161 @@ public final class Machine extends AbstractTeleVMHolder{
     }
 
     public int depth() {
-        return currentThread.frame().stack().size();
+        return currentThread.frame().stackDepth();
     }
 
-    public Value getStatic(int cpIndex) {
-        final ConstantPool constantPool = currentThread.frame().constantPool();
-        final FieldRefConstant fieldRef = constantPool.fieldAt(cpIndex);
+    /**
+     * Pushes the value of a static field.
+     */
+    public void getStatic(int cpIndex) {
+        final ConstantPoolCache.ResolvedField field = resolveField(cpIndex);
+        final FieldActor fieldActor = field.fieldActor;
         if (vm() != null) {
-            final FieldActor fieldActor = fieldRef.resolve(constantPool, cpIndex);
-            final TeleClassActor teleClassActor = vm().findTeleClassActor(fieldActor.holder().typeDescriptor);
-            final TeleStaticTuple teleStaticTuple = teleClassActor.getTeleStaticTuple();
-            final Reference staticTupleReference = teleStaticTuple.reference();
-
-            switch (fieldActor.kind.asEnum) {
-                case BOOLEAN:
-                case BYTE:
-                case CHAR:
-                case SHORT:
-                case INT: {
-                    final int intValue = fieldActor.kind.readValue(staticTupleReference, fieldActor.offset()).toInt();
-                    return IntValue.from(intValue);
-                }
-                case FLOAT: {
-                    return FloatValue.from(staticTupleReference.readFloat(fieldActor.offset()));
-                }
-                case LONG: {
-                    return LongValue.from(staticTupleReference.readLong(fieldActor.offset()));
-                }
-                case DOUBLE: {
-                    return DoubleValue.from(staticTupleReference.readDouble(fieldActor.offset()));
-                }
-                case WORD: {
-                    return new WordValue(staticTupleReference.readWord(fieldActor.offset()));
-                }
-                case REFERENCE: {
-                    return vm().createReferenceValue(vm().wordToReference(staticTupleReference.readWord(fieldActor.offset())));
-                }
-            }
+            pushRemote(remoteStaticTuple(fieldActor.holder()).toOrigin().plus(field.offset), field.kind);
         } else {
-            final FieldActor fieldActor = fieldRef.resolve(constantPool, cpIndex);
-            return widenIfNecessary(fieldActor.readValue(Reference.fromJava(fieldActor.holder().staticTuple())));
+            push(fieldActor.readValue(Reference.fromJava(fieldActor.holder().staticTuple())));
         }
+    }
 
-        return null;
+    public ConstantPoolCache.ResolvedField resolveField(int cpIndex) {
+        return currentThread.frame().constantPoolCache().field(cpIndex);
     }
 
-    public void putStatic(int cpIndex, Value value) {
+    public void putStatic(FieldActor fieldActor, Value value) {
         if (vm() != null) {
             ProgramError.unexpected("Cannot run putstatic remotely!");
         } else {
-            final ConstantPool cp = currentThread.frame().constantPool();
-            final FieldActor fieldActor = cp.fieldAt(cpIndex).resolve(cp, cpIndex);
             fieldActor.writeValue(fieldActor.holder().staticTuple(), fieldActor.kind.convert(value));
         }
     }
 
-    public Value getField(Reference instance, int cpIndex) throws TeleInterpreterException {
+    /**
+     * Pushes the value of an instance field. The field is accessed directly at its cached offset so that no
+     * intermediate {@link Value} is created for a primitive field.
+     */
+    public void getField(Reference instance, int cpIndex) throws TeleInterpreterException {
         if (instance.isZero()) {
             raiseException(new NullPointerException());
         }
-        final ConstantPool constantPool = currentThread.frame().constantPool();
-        final FieldRefConstant fieldRef = constantPool.fieldAt(cpIndex);
-        final FieldActor fieldActor = fieldRef.resolve(constantPool, cpIndex);
-        final Kind kind = fieldActor.kind;
+        final ConstantPoolCache.ResolvedField field = resolveField(cpIndex);
+        final int offset = field.offset;
+        if (instance instanceof TeleReference && !((TeleReference) instance).isLocal()) {
+            // Fetch all the fields declared up to the field's holder now, as more of them are likely to be read
+            final Pointer origin = instance.toOrigin();
+            remoteMemory().prefetch(origin, field.fieldActor.holder().dynamicTupleSize().toInt());
+            pushRemote(origin.plus(offset), field.kind);
+            return;
+        }
 
-        if (kind.isExtendedPrimitiveValue()) {
-            return widenIfNecessary(fieldActor.readValue(instance));
-        } else {
-            assert kind.isReference;
-            if (instance instanceof TeleReference && !((TeleReference) instance).isLocal()) {
-                return vm().createReferenceValue(vm().wordToReference(instance.readWord(fieldActor.offset())));
-            } else {
-                return fieldActor.readValue(instance);
-            }
+        final ExecutionFrame frame = currentThread.frame();
+        switch (field.kind.asEnum) {
+            case BOOLEAN:
+                frame.pushInt(instance.readBoolean(offset) ? 1 : 0);
+                break;
+            case BYTE:
+                frame.pushInt(instance.readByte(offset));
+                break;
+            case CHAR:
+                frame.pushInt(instance.readChar(offset));
+                break;
+            case SHORT:
+                frame.pushInt(instance.readShort(offset));
+                break;
+            case INT:
+                frame.pushInt(instance.readInt(offset));
+                break;
+            case FLOAT:
+                frame.pushFloat(instance.readFloat(offset));
+                break;
+            case LONG:
+                frame.pushLong(instance.readLong(offset));
+                break;
+            case DOUBLE:
+                frame.pushDouble(instance.readDouble(offset));
+                break;
+            case WORD:
+                frame.pushReference(new WordValue(instance.readWord(offset)));
+                break;
+            default:
+                assert field.kind.isReference;
+                frame.pushReference(field.fieldActor.readValue(instance));
+                break;
+        }
+    }
+
+    /**
+     * Gets the cache through which the memory of the remote VM is read.
+     */
+    RemoteMemoryCache remoteMemory() {
+        if (remoteMemory == null) {
+            remoteMemory = new RemoteMemoryCache(vm());
+            remoteMemory.profile = profile;
+        }
+        return remoteMemory;
+    }
+
+    /**
+     * Gets the reference to the static tuple of a given class in the remote VM.
+     */
+    private Reference remoteStaticTuple(ClassActor holder) {
+        Reference staticTuple = remoteStaticTuples.get(holder);
+        if (staticTuple == null) {
+            final TeleClassActor teleClassActor = vm().findTeleClassActor(holder.typeDescriptor);
+            final TeleStaticTuple teleStaticTuple = teleClassActor.getTeleStaticTuple();
+            staticTuple = teleStaticTuple.reference();
+            remoteStaticTuples.put(holder, staticTuple);
+        }
+        return staticTuple;
+    }
+
+    /**
+     * Pushes a value of a given kind read from the remote VM's memory.
+     */
+    private void pushRemote(Address address, Kind kind) {
+        final RemoteMemoryCache memory = remoteMemory();
+        final ExecutionFrame frame = currentThread.frame();
+        if (profile != null) {
+            profile.remoteRead();
+        }
+        switch (kind.asEnum) {
+            case BOOLEAN:
+                frame.pushInt(memory.readByte(address) != 0 ? 1 : 0);
+                break;
+            case BYTE:
+                frame.pushInt(memory.readByte(address));
+                break;
+            case CHAR:
+                frame.pushInt(memory.readChar(address));
+                break;
+            case SHORT:
+                frame.pushInt(memory.readShort(address));
+                break;
+            case INT:
+                frame.pushInt(memory.readInt(address));
+                break;
+            case FLOAT:
+                frame.pushFloat(memory.readFloat(address));
+                break;
+            case LONG:
+                frame.pushLong(memory.readLong(address));
+                break;
+            case DOUBLE:
+                frame.pushDouble(memory.readDouble(address));
+                break;
+            case WORD:
+                frame.pushReference(new WordValue(memory.readWord(address)));
+                break;
+            default:
+                assert kind.isReference;
+                frame.pushReference(vm().createReferenceValue(vm().wordToReference(memory.readWord(address))));
+                break;
         }
     }
 
-    public void putField(Object instance, int cpIndex, Value value) {
+    public void putField(Object instance, FieldActor fieldActor, Value value) {
         if (instance instanceof TeleReference && !((TeleReference) instance).isLocal()) {
             ProgramError.unexpected("Cannot run putfield remotely!");
         } else {
-            final ConstantPool cp = currentThread.frame().constantPool();
-            final FieldActor fieldActor = cp.fieldAt(cpIndex).resolve(cp, cpIndex);
-
             if (value instanceof TeleReferenceValue) {
                 fieldActor.writeValue(instance, TeleReferenceValue.from(vm(), makeLocalReference((TeleReference) value.asReference())));
             } else {
@@ -297,77 +576,79 @@ public final class Machine extends AbstractTeleVMHolder{
     }
 
     public MethodActor resolveMethod(int cpIndex) {
-        final ConstantPool cp = currentThread.frame().constantPool();
-        final MethodRefConstant methodRef = cp.methodAt(cpIndex);
-        return methodRef.resolve(cp, cpIndex);
+        return currentThread.frame().constantPoolCache().method(cpIndex);
+    }
+
+    /**
+     * Reads a range of the elements of a remote primitive array as raw bytes.
+     *
+     * @param layout the layout of the array
+     * @param start the index of the first element read
+     * @param elementSize the size in bytes of an element
+     */
+    private ByteBuffer readRemoteArrayElements(TeleReference remoteArray, ArrayLayout layout, int start, int length, int elementSize) {
+        final RemoteMemoryCache memory = remoteMemory();
+        final byte[] bytes = new byte[length * elementSize];
+        if (profile != null) {
+            profile.remoteRead();
+        }
+        memory.readBytes(remoteArray.toOrigin().plus(layout.getElementOffsetFromOrigin(start)), bytes);
+        return ByteBuffer.wrap(bytes).order(memory.byteOrder());
+    }
+
+    /**
+     * Reads a range of the elements of a remote primitive array into a new local array with one request to the VM.
+     *
+     * @return the local array or {@code null} if {@code remoteArray} is not a primitive array
+     * @throws ArrayIndexOutOfBoundsException if the range is not within the bounds of the array
+     */
+    Object readRemoteArray(TeleReference remoteArray, int start, int length) {
+        final ClassActor classActor = vm().makeClassActorForTypeOf(remoteArray);
+        if (!classActor.isArrayClass() || !classActor.componentClassActor().isPrimitiveClassActor()) {
+            return null;
+        }
+        if (start < 0 || length < 0 || start > arrayLength(remoteArray) - length) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        return readRemoteArray(remoteArray, start, length, classActor.componentClassActor().typeDescriptor);
     }
 
-    private Object readRemoteArray(TeleReference remoteArray, int length, TypeDescriptor type) {
+    private Object readRemoteArray(TeleReference remoteArray, int start, int length, TypeDescriptor type) {
         Object localArray = null;
-        // TODO: this could probably ask the kind to perform the operation
         if (type == JavaTypeDescriptor.BOOLEAN) {
+            final ByteBuffer elements = readRemoteArrayElements(remoteArray, Layout.booleanArrayLayout(), start, length, 1);
             final boolean[] array = new boolean[length];
 
             for (int i = 0; i < length; i++) {
-                array[i] = Layout.getBoolean(remoteArray, i);
+                array[i] = elements.get(i) != 0;
             }
 
             localArray = array;
         } else if (type == JavaTypeDescriptor.BYTE) {
-            final byte[] array = new byte[length];
-
-            for (int i = 0; i < length; i++) {
-                array[i] = Layout.getByte(remoteArray, i);
-            }
-
-            localArray = array;
+            localArray = readRemoteArrayElements(remoteArray, Layout.byteArrayLayout(), start, length, 1).array();
         } else if (type == JavaTypeDescriptor.CHAR) {
-            final char[] array =  new char[length];
-
-            for (int i = 0; i < length; i++) {
-                array[i] = Layout.getChar(remoteArray, i);
-            }
-
+            final char[] array = new char[length];
+            readRemoteArrayElements(remoteArray, Layout.charArrayLayout(), start, length, 2).asCharBuffer().get(array);
             localArray = array;
         } else if (type == JavaTypeDescriptor.DOUBLE) {
             final double[] array = new double[length];
-
-            for (int i = 0; i < length; i++) {
-                array[i] = Layout.getDouble(remoteArray, i);
-            }
-
+            readRemoteArrayElements(remoteArray, Layout.doubleArrayLayout(), start, length, 8).asDoubleBuffer().get(array);
             localArray = array;
         } else if (type == JavaTypeDescriptor.FLOAT) {
             final float[] array = new float[length];
-
-            for (int i = 0; i < length; i++) {
-                array[i] = Layout.getFloat(remoteArray, i);
-            }
-
+            readRemoteArrayElements(remoteArray, Layout.floatArrayLayout(), start, length, 4).asFloatBuffer().get(array);
             localArray = array;
         } else if (type == JavaTypeDescriptor.INT) {
             final int[] array = new int[length];
-
-            for (int i = 0; i < length; i++) {
-                array[i] = Layout.getInt(remoteArray, i);
-            }
-
+            readRemoteArrayElements(remoteArray, Layout.intArrayLayout(), start, length, 4).asIntBuffer().get(array);
             localArray = array;
         } else if (type == JavaTypeDescriptor.LONG) {
             final long[] array = new long[length];
-
-            for (int i = 0; i < length; i++) {
-                array[i] = Layout.getLong(remoteArray, i);
-            }
-
+            readRemoteArrayElements(remoteArray, Layout.longArrayLayout(), start, length, 8).asLongBuffer().get(array);
             localArray = array;
         } else if (type == JavaTypeDescriptor.SHORT) {
             final short[] array = new short[length];
-
-            for (int i = 0; i < length; i++) {
-                array[i] = Layout.getShort(remoteArray, i);
-            }
-
+            readRemoteArrayElements(remoteArray, Layout.shortArrayLayout(), start, length, 2).asShortBuffer().get(array);
             localArray = array;
         } else {
             ProgramError.unexpected("readRemoteArray called without a primitive array type");
@@ -384,93 +665,230 @@ public final class Machine extends AbstractTeleVMHolder{
         final ClassActor remoteReferenceClassActor = vm().makeClassActorForTypeOf(remoteReference);
 
         if (remoteReferenceClassActor.typeDescriptor.equals(JavaTypeDescriptor.STRING)) {
-            return Reference.fromJava(vm().getString(remoteReference));
+            return Reference.fromJava(RemoteStringCache.of(vm()).get(vm(), remoteReference, profile));
         } else if (remoteReferenceClassActor.isArrayClass() && remoteReferenceClassActor.componentClassActor().isPrimitiveClassActor()) {
-            final int arrayLength = Layout.readArrayLength(remoteReference);
-            return Reference.fromJava(readRemoteArray(remoteReference, arrayLength, remoteReferenceClassActor.componentClassActor().typeDescriptor));
+            final Long origin = remoteReference.toOrigin().toLong();
+            Object copy = remoteArrayCopies.get(origin);
+            if (copy == null) {
+                copy = readRemoteArray(remoteReference, 0, arrayLength(remoteReference), remoteReferenceClassActor.componentClassActor().typeDescriptor);
+                remoteArrayCopies.put(origin, copy);
+            }
+            return Reference.fromJava(copy);
         } else {
             //should put some tracing error message here
             return remoteReference;
         }
     }
 
-    private void invertOperands(Stack<Value> argumentStack, Value[] arguments) {
-        for (int i = 0; i < arguments.length; i++) {
-            arguments[i] = argumentStack.pop();
+    /**
+     * Determines if a reference denotes an object in the remote VM.
+     */
+    static boolean isRemote(Reference reference) {
+        return reference instanceof TeleReference && !((TeleReference) reference).isLocal();
+    }
 
-            if (arguments[i] instanceof TeleReferenceValue) {
-                final TeleReferenceValue inspectorReferenceArgument = (TeleReferenceValue) arguments[i];
-                final TeleReference reference = (TeleReference) inspectorReferenceArgument.asReference();
-                if (!reference.isLocal()) {
-                    arguments[i] = TeleReferenceValue.from(vm(), makeLocalReference(reference));
-                }
+    /**
+     * Gets the length of an array, reading the length of a remote array from the VM only once.
+     */
+    int arrayLength(Reference array) {
+        if (!isRemote(array)) {
+            return Layout.readArrayLength(array);
+        }
+        final Long origin = ((TeleReference) array).toOrigin().toLong();
+        Integer length = remoteArrayLengths.get(origin);
+        if (length == null) {
+            length = Layout.readArrayLength(array);
+            remoteArrayLengths.put(origin, length);
+        }
+        return length;
+    }
+
+    /**
+     * Gets the array read through a given array reference. This is the array itself unless it is a remote primitive
+     * array that has been copied, in which case it is the copy.
+     */
+    Reference readableArray(Reference array) {
+        if (remoteArrayCopies.isEmpty() || !isRemote(array)) {
+            return array;
+        }
+        final Object copy = remoteArrayCopies.get(((TeleReference) array).toOrigin().toLong());
+        return copy == null ? array : Reference.fromJava(copy);
+    }
+
+    /**
+     * Gets the array written through a given array reference. A remote primitive array is copied when it is first
+     * written.
+     */
+    Reference writableArray(Reference array) {
+        if (!isRemote(array)) {
+            return array;
+        }
+        return makeLocalReference((TeleReference) array);
+    }
+
+    /**
+     * Pushes an element of a remote primitive array, read through the {@linkplain RemoteMemoryCache cache} so that a
+     * scan of the array fetches it a block at a time.
+     */
+    void pushRemoteArrayElement(TeleReference remoteArray, int index, Kind kind) {
+        final ArrayLayout layout;
+        switch (kind.asEnum) {
+            // Checkstyle: stop
+            case BOOLEAN: layout = Layout.booleanArrayLayout(); break;
+            case BYTE:    layout = Layout.byteArrayLayout(); break;
+            case CHAR:    layout = Layout.charArrayLayout(); break;
+            case SHORT:   layout = Layout.shortArrayLayout(); break;
+            case INT:     layout = Layout.intArrayLayout(); break;
+            case FLOAT:   layout = Layout.floatArrayLayout(); break;
+            case LONG:    layout = Layout.longArrayLayout(); break;
+            case DOUBLE:  layout = Layout.doubleArrayLayout(); break;
+            default:      throw ProgramError.unexpected("not a primitive array kind: " + kind);
+            // Checkstyle: resume
+        }
+        pushRemote(remoteArray.toOrigin().plus(layout.getElementOffsetFromOrigin(index)), kind);
+    }
+
+    /**
+     * Replaces a reference to a remote object by a reference to a local copy of the object where possible.
+     */
+    Value makeLocalValue(Value value) {
+        if (value instanceof TeleReferenceValue) {
+            final TeleReference reference = (TeleReference) value.asReference();
+            if (!reference.isLocal()) {
+                return TeleReferenceValue.from(vm(), makeLocalReference(reference));
             }
         }
+        return value;
+    }
+
+    /**
+     * Pops the arguments of a method off the operand stack for a reflective invocation, making local copies of
+     * remote objects where possible.
+     */
+    private Value[] popArguments(ArgumentLayout layout) {
+        final ExecutionFrame frame = currentThread.frame();
+        final Value[] arguments = new Value[layout.kinds.length];
+        for (int i = arguments.length - 1; i >= 0; i--) {
+            arguments[i] = makeLocalValue(frame.pop(layout.kinds[i]));
+        }
+        return arguments;
     }
 
     private final ClassMethodActor safepointAndLoadExceptionObject = (ClassMethodActor) MethodActor.fromJava(Classes.findDeclaredMethod(ExceptionDispatcher.class, "safepointAndLoadExceptionObject"));
 
     public void invokeMethod(ClassMethodActor method) throws TeleInterpreterException {
-        final ExecutionFrame oldFrame = currentThread.frame();
-        final Stack<Value> argumentStack = new Stack<Value>();
-        final Stack<Value> oldOperands = oldFrame.stack();
-        int numberOfParameters = method.descriptor().numberOfParameters();
-        int i;
-
-        if (!method.isStatic()) {
-            numberOfParameters++;
+        final ArgumentLayout layout = ArgumentLayout.of(method);
+        if (profile != null) {
+            profile.invoked(method);
         }
 
-        //inverting the operands
-        for (i = 0; i < numberOfParameters; i++) {
-            argumentStack.push(oldOperands.pop());
+        final Intrinsics.Intrinsic intrinsic = Intrinsics.get(method);
+        if (intrinsic != null) {
+            final boolean executed;
+            try {
+                executed = intrinsic.execute(this, currentThread.frame());
+            } catch (RuntimeException e) {
+                throw raiseException(e);
+            }
+            if (executed) {
+                return;
+            }
         }
 
         if (method == safepointAndLoadExceptionObject) {
-            push(widenIfNecessary(ReferenceValue.from(ExceptionDispatcher.hostedSafepointAndLoadExceptionObject())));
-        } else if (method.isNative()) {
-            final Value[] arguments = new Value[numberOfParameters];
-            invertOperands(argumentStack, arguments);
-            try {
-                push(widenIfNecessary(method.invoke(arguments)));
-            } catch (InvocationTargetException e) {
-                throw new TeleInterpreterException(e.getCause(), this);
-            } catch (IllegalAccessException e) {
-                throw new TeleInterpreterException(e, this);
+            currentThread.frame().discard(layout.slots);
+            push(ReferenceValue.from(ExceptionDispatcher.hostedSafepointAndLoadExceptionObject()));
+        } else if (method.isNative() || method.codeAttribute() == null || Word.class.isAssignableFrom(method.holder().toJava())) {
+            final HostCall call = HostCall.of(method);
+            if (call != null) {
+                call.invoke(this, currentThread.frame());
+                return;
+            }
+            final Value[] arguments = popArguments(layout);
+            if (method.isNative()) {
+                try {
+                    push(method.invoke(arguments));
+                } catch (InvocationTargetException e) {
+                    throw raiseException(e.getCause());
+                } catch (IllegalAccessException e) {
+                    throw raiseException(e);
+                }
+                return;
             }
-        } else if (method.codeAttribute() == null || Word.class.isAssignableFrom(method.holder().toJava())) {
-            final Value[] arguments = new Value[numberOfParameters];
-            invertOperands(argumentStack, arguments);
-
             try {
                 Value result = method.invoke(arguments);
                 if (result.kind().isReference) {
                     result = toReferenceValue(Reference.fromJava(result.asObject()));
                 }
-                push(widenIfNecessary(result));
+                push(result);
             } catch (InvocationTargetException e) {
-                throw new TeleInterpreterException(e.getCause(), this);
+                throw raiseException(e.getCause());
             } catch (IllegalAccessException e) {
-                throw new TeleInterpreterException(e, this);
+                throw raiseException(e);
             }
         } else {
-            final ExecutionFrame newFrame = currentThread.pushFrame(method);
-            i = 0;
-            while (i < numberOfParameters) {
-                final Value argument = argumentStack.pop();
-                newFrame.setLocal(i, argument);
-
-                if (argument instanceof DoubleValue || argument instanceof LongValue) {
-                    i++;
-                    numberOfParameters++;
+            Object monitor = null;
+            if (method.isSynchronized()) {
+                monitor = method.isStatic() ? method.holder().toJava() : monitorFor(peekReference(layout.slots - 1).asReference());
+                if (!monitorEnter(monitor)) {
+                    // Retry the invocation once the thread is rescheduled
+                    currentThread.frame().rewind();
+                    return;
                 }
-                i++;
             }
+            if (vm() == null && budget == null && HostedTier.isHot(method)) {
+                final boolean invoked;
+                try {
+                    invoked = invokeOnHost(method, layout);
+                } catch (ThrownException thrownException) {
+                    exitMonitor(monitor);
+                    throw thrownException;
+                }
+                if (invoked) {
+                    exitMonitor(monitor);
+                    return;
+                }
+            }
+            final ExecutionFrame newFrame = currentThread.pushFrame(method, layout.slots);
+            newFrame.monitor = monitor;
+            if (budget != null) {
+                budget.chargeInstructions(1);
+            }
+        }
+    }
+
+    /**
+     * Executes a method in the host VM instead of interpreting it.
+     *
+     * @return {@code false} if the host VM cannot execute the method, in which case its arguments are left on the
+     *         operand stack
+     */
+    private boolean invokeOnHost(ClassMethodActor method, ArgumentLayout layout) throws TeleInterpreterException {
+        final HostCall call = HostCall.of(method);
+        if (call != null) {
+            call.invoke(this, currentThread.frame());
+            return true;
+        }
+        final Value[] arguments = popArguments(layout);
+        try {
+            Value result = method.invoke(arguments);
+            if (result.kind().isReference) {
+                result = toReferenceValue(Reference.fromJava(result.asObject()));
+            }
+            push(result);
+            return true;
+        } catch (InvocationTargetException e) {
+            throw raiseException(e.getCause());
+        } catch (IllegalAccessException e) {
+            HostedTier.disable(method);
+            for (Value argument : arguments) {
+                push(argument);
+            }
+            return false;
         }
     }
 
     public ClassActor resolveClassReference(int constantPoolIndex) {
-        final ConstantPool constantPool = currentThread.frame().constantPool();
-        return constantPool.classAt(constantPoolIndex).resolve(constantPool, constantPoolIndex);
+        return currentThread.frame().constantPoolCache().classActor(constantPoolIndex);
     }
 }
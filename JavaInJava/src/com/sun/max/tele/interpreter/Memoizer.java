@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import java.lang.ref.SoftReference;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.sun.max.tele.*;
+import com.sun.max.tele.reference.*;
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.reference.*;
+import com.sun.max.vm.value.*;
+
+/**
+ * Memoizes the results of {@linkplain Purity pure} methods executed against a paused VM. While the VM is paused its
+ * heap cannot change, so a pure method called again with the same arguments returns the same result. The memoized
+ * results of a VM are discarded as soon as the {@linkplain TeleProcess#epoch() epoch} of its process has advanced.
+ * <p>
+ * Only calls whose arguments and result cannot be changed by the caller are memoized. These are primitive values,
+ * words, {@code null}, references to remote objects, which are immutable while the VM is paused, and strings.
+ * Memoization is disabled when running without a remote VM. It is also disabled unless the
+ * {@code max.interpreter.memoize} system property is set to {@code true}.
+ */
+final class Memoizer {
+
+    private Memoizer() {
+    }
+
+    static final boolean ENABLED = Boolean.getBoolean("max.interpreter.memoize");
+
+    /**
+     * The maximum number of results retained for a VM. All results are discarded when it is exceeded.
+     */
+    static final int MAX_RESULTS = Integer.getInteger("max.interpreter.memoizedResults", 10000);
+
+    /**
+     * A call of a method with given arguments. The arguments are represented by values that denote the same argument
+     * in any later call: primitive values and words as boxed numbers, remote references as their origins and strings
+     * as themselves.
+     */
+    static final class Key {
+        final ClassMethodActor method;
+        final Object[] arguments;
+        final long epoch;
+
+        Key(ClassMethodActor method, Object[] arguments, long epoch) {
+            this.method = method;
+            this.arguments = arguments;
+            this.epoch = epoch;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof Key) {
+                final Key key = (Key) other;
+                return method == key.method && Arrays.equals(arguments, key.arguments);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return method.hashCode() ^ Arrays.hashCode(arguments);
+        }
+    }
+
+    /**
+     * The results memoized for a VM during one epoch of its process.
+     */
+    private static final class Results {
+        final long epoch;
+        final ConcurrentMap<Key, Value> values = new ConcurrentHashMap<Key, Value>();
+
+        Results(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * The results memoized for each VM. Memoized remote references refer to their VM, so the results are only softly
+     * reachable from here so that they, and the VM, can be reclaimed once the VM is no longer used elsewhere.
+     */
+    private static final Map<TeleVM, SoftReference<Results>> results = new WeakHashMap<TeleVM, SoftReference<Results>>();
+
+    /**
+     * Marks a {@code null} or a local argument whose identity matters.
+     */
+    private static final Object UNMEMOIZABLE = new Object();
+
+    /**
+     * Gets the representation of a value that denotes the same value in any call while the VM is paused.
+     *
+     * @return {@code null} for a null reference, {@link #UNMEMOIZABLE} if the value is a mutable local object
+     */
+    private static Object stableValue(Value value) {
+        switch (value.kind().asEnum) {
+            case REFERENCE: {
+                if (value.isZero()) {
+                    return null;
+                }
+                final Reference reference = value.asReference();
+                if (reference instanceof TeleReference && !((TeleReference) reference).isLocal()) {
+                    return Long.valueOf(((TeleReference) reference).toOrigin().toLong());
+                }
+                final Object object = reference.toJava();
+                return object instanceof String ? object : UNMEMOIZABLE;
+            }
+            case WORD:
+                return Long.valueOf(value.toLong());
+            default:
+                return value.asBoxedJavaValue();
+        }
+    }
+
+    /**
+     * Gets the key under which the result of a call is memoized.
+     *
+     * @return {@code null} if the call cannot be memoized
+     */
+    static Key keyFor(TeleVM teleVM, ClassMethodActor method, Value[] arguments) {
+        if (!ENABLED || teleVM == null || !Purity.isPure(method)) {
+            return null;
+        }
+        final Object[] stableArguments = new Object[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            stableArguments[i] = stableValue(arguments[i]);
+            if (stableArguments[i] == UNMEMOIZABLE) {
+                return null;
+            }
+        }
+        return new Key(method, stableArguments, teleVM.teleProcess().epoch());
+    }
+
+    /**
+     * Gets the results memoized for a VM in a given epoch, discarding those of any earlier epoch.
+     *
+     * @return {@code null} if {@code epoch} is earlier than the epoch of the results already memoized for the VM
+     */
+    private static synchronized Results results(TeleVM teleVM, long epoch) {
+        final SoftReference<Results> reference = results.get(teleVM);
+        Results vmResults = reference == null ? null : reference.get();
+        if (vmResults == null || epoch > vmResults.epoch) {
+            vmResults = new Results(epoch);
+            results.put(teleVM, new SoftReference<Results>(vmResults));
+        } else if (epoch < vmResults.epoch) {
+            return null;
+        }
+        return vmResults;
+    }
+
+    /**
+     * Gets the memoized result of a call.
+     *
+     * @return {@code null} if no result is memoized for the call in the current epoch
+     */
+    static Value lookup(TeleVM teleVM, Key key) {
+        final Results vmResults = results(teleVM, key.epoch);
+        return vmResults == null ? null : vmResults.values.get(key);
+    }
+
+    /**
+     * Memoizes the result of a call if the VM has not run since the call started and the result cannot be changed by
+     * the caller.
+     */
+    static void record(TeleVM teleVM, Key key, Value result) {
+        if (stableValue(result) == UNMEMOIZABLE || teleVM.teleProcess().epoch() != key.epoch) {
+            return;
+        }
+        final Results vmResults = results(teleVM, key.epoch);
+        if (vmResults == null) {
+            return;
+        }
+        if (vmResults.values.size() >= MAX_RESULTS) {
+            vmResults.values.clear();
+        }
+        vmResults.values.put(key, result);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import java.util.*;
+
+/**
+ * The ownership of the monitors acquired by the {@linkplain ExecutionThread threads} of a {@linkplain Machine machine}.
+ * A monitor is identified by an object compared by identity: the local Java object being locked or, for an object in a
+ * remote VM, the reference to it.
+ */
+final class MonitorTable {
+
+    private static final class Monitor {
+        ExecutionThread owner;
+        int count;
+    }
+
+    private final Map<Object, Monitor> monitors = new IdentityHashMap<Object, Monitor>();
+
+    /**
+     * Acquires a monitor for a given thread if it is not owned by another thread.
+     *
+     * @return {@code false} if the monitor is owned by another thread
+     */
+    boolean enter(Object object, ExecutionThread thread) {
+        Monitor monitor = monitors.get(object);
+        if (monitor == null) {
+            monitor = new Monitor();
+            monitor.owner = thread;
+            monitors.put(object, monitor);
+        } else if (monitor.owner != thread) {
+            return false;
+        }
+        monitor.count++;
+        return true;
+    }
+
+    /**
+     * Releases a monitor once on behalf of a given thread.
+     *
+     * @return {@code false} if the monitor is not owned by {@code thread}
+     */
+    boolean exit(Object object, ExecutionThread thread) {
+        final Monitor monitor = monitors.get(object);
+        if (monitor == null || monitor.owner != thread) {
+            return false;
+        }
+        if (--monitor.count == 0) {
+            monitors.remove(object);
+        }
+        return true;
+    }
+
+    /**
+     * Determines if a given thread can acquire a monitor without blocking.
+     */
+    boolean isAvailable(Object object, ExecutionThread thread) {
+        final Monitor monitor = monitors.get(object);
+        return monitor == null || monitor.owner == thread;
+    }
+
+    /**
+     * Releases all the monitors owned by a given thread.
+     */
+    void releaseAll(ExecutionThread thread) {
+        final Iterator<Monitor> iterator = monitors.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().owner == thread) {
+                iterator.remove();
+            }
+        }
+    }
+
+    void clear() {
+        monitors.clear();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import static com.sun.cri.bytecode.Bytecodes.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.sun.max.annotate.*;
+import com.sun.max.vm.actor.member.*;
+
+/**
+ * Determines which methods are free of side effects so that their results can be {@linkplain Memoizer memoized}. A
+ * method is pure if it is annotated with {@link PURE} or if a scan of its bytecode finds no field or array store, no
+ * monitor operation, no allocation and no call to a method that is not itself pure. A virtual or interface call is
+ * only considered pure if the method it names is annotated, as the scan cannot know which implementation is selected.
+ */
+final class Purity {
+
+    private Purity() {
+    }
+
+    private static final ConcurrentMap<ClassMethodActor, Boolean> cache = new ConcurrentHashMap<ClassMethodActor, Boolean>();
+
+    static boolean isPure(ClassMethodActor method) {
+        Boolean isPure = cache.get(method);
+        if (isPure == null) {
+            final Set<ClassMethodActor> scanned = new HashSet<ClassMethodActor>();
+            isPure = scan(method, scanned);
+            if (isPure) {
+                // Every method reached by a successful scan is pure
+                for (ClassMethodActor scannedMethod : scanned) {
+                    cache.put(scannedMethod, Boolean.TRUE);
+                }
+            } else {
+                cache.put(method, Boolean.FALSE);
+            }
+        }
+        return isPure;
+    }
+
+    private static boolean isDeclaredPure(MethodActor method) {
+        return method.getAnnotation(PURE.class) != null;
+    }
+
+    /**
+     * Scans a method and the methods it calls for side effects. A method already being scanned further up the call
+     * chain is assumed to be pure, which holds if the rest of the scan finds no side effect.
+     */
+    private static boolean scan(ClassMethodActor method, Set<ClassMethodActor> scanned) {
+        if (isDeclaredPure(method) || cache.get(method) == Boolean.TRUE || !scanned.add(method)) {
+            return true;
+        }
+        if (method.isNative() || method.codeAttribute() == null) {
+            return false;
+        }
+        try {
+            final DecodedCode code = DecodedCode.of(method);
+            for (int i = 0; i < code.opcodes.length; i++) {
+                final int opcode = code.opcodes[i];
+                switch (opcode) {
+                    case PUTFIELD:
+                    case PUTSTATIC:
+                    case IASTORE:
+                    case LASTORE:
+                    case FASTORE:
+                    case DASTORE:
+                    case AASTORE:
+                    case BASTORE:
+                    case CASTORE:
+                    case SASTORE:
+                    case MONITORENTER:
+                    case MONITOREXIT:
+                    case NEW:
+                    case NEWARRAY:
+                    case ANEWARRAY:
+                    case MULTIANEWARRAY:
+                        return false;
+                    case INVOKEVIRTUAL:
+                    case INVOKEINTERFACE:
+                        if (!isDeclaredPure(code.constantPoolCache.method(code.operands[i]))) {
+                            return false;
+                        }
+                        break;
+                    case INVOKESTATIC:
+                    case INVOKESPECIAL: {
+                        final MethodActor callee = code.constantPoolCache.method(code.operands[i]);
+                        if (!(callee instanceof ClassMethodActor) || !scan((ClassMethodActor) callee, scanned)) {
+                            return false;
+                        }
+                        break;
+                    }
+                    default:
+                        if (opcode > JSR_W && opcode < Superinstructions.LOAD_GETFIELD) {
+                            // The extended bytecodes access memory and registers directly
+                            return false;
+                        }
+                        break;
+                }
+            }
+            return true;
+        } catch (RuntimeException e) {
+            // The code or one of the methods it calls cannot be resolved
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import java.nio.*;
+import java.util.*;
+
+import com.sun.max.lang.*;
+import com.sun.max.tele.*;
+import com.sun.max.unsafe.*;
+
+/**
+ * A cache of the memory of a remote VM, used so that the interpreter does not make a separate request to the VM for
+ * every value it reads. Memory is fetched in aligned blocks of {@link #BLOCK_SIZE} bytes and subsequent reads within a
+ * block are served locally. The block size is that of the smallest page so that a block that contains a readable
+ * address is readable in its entirety.
+ * <p>
+ * The contents of the cache are only valid while the VM remains paused. They are discarded whenever the
+ * {@linkplain TeleProcess#epoch() epoch} of the VM's process has advanced since they were fetched, which happens each
+ * time the VM is resumed.
+ * <p>
+ * Reads of the memory of a remote object can be batched by {@linkplain #prefetch(Address, int) prefetching} the
+ * range covering the object, which fetches any missing blocks with as few requests as possible.
+ * <p>
+ * A cache is owned by a single {@link Machine} and is not thread safe.
+ */
+final class RemoteMemoryCache {
+
+    /**
+     * The size and alignment of the blocks in which memory is fetched. This must be a power of two.
+     */
+    static final int BLOCK_SIZE = 4096;
+
+    /**
+     * The maximum number of blocks retained. The least recently used block is discarded when this is exceeded.
+     */
+    static final int MAX_BLOCKS = 256;
+
+    private final TeleVM vm;
+    private final ByteOrder byteOrder;
+    private final Map<Long, ByteBuffer> blocks = new LinkedHashMap<Long, ByteBuffer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ByteBuffer> eldest) {
+            return size() > MAX_BLOCKS;
+        }
+    };
+    private long epoch = -1;
+    private long lastBlockAddress = -1;
+    private ByteBuffer lastBlock;
+
+    /**
+     * The profile in which requests to the VM are recorded or {@code null}.
+     */
+    InterpreterProfile profile;
+
+    RemoteMemoryCache(TeleVM vm) {
+        this.vm = vm;
+        this.byteOrder = vm.vmConfiguration().platform().processorKind.dataModel.endianness.asByteOrder();
+    }
+
+    /**
+     * Gets the byte order of values in the remote VM's memory.
+     */
+    ByteOrder byteOrder() {
+        return byteOrder;
+    }
+
+    /**
+     * Discards the cached memory if the VM has run since it was fetched.
+     */
+    private void validate() {
+        final long epoch = vm.teleProcess().epoch();
+        if (epoch != this.epoch) {
+            blocks.clear();
+            lastBlockAddress = -1;
+            lastBlock = null;
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * Gets the cached block containing a given address, fetching it from the VM if necessary.
+     */
+    private ByteBuffer block(long address) {
+        validate();
+        final long blockAddress = address & ~(BLOCK_SIZE - 1);
+        if (blockAddress == lastBlockAddress) {
+            return lastBlock;
+        }
+        ByteBuffer block = blocks.get(blockAddress);
+        if (block == null) {
+            final byte[] bytes = new byte[BLOCK_SIZE];
+            fetch(Address.fromLong(blockAddress), bytes);
+            block = ByteBuffer.wrap(bytes).order(byteOrder);
+            blocks.put(blockAddress, block);
+        }
+        lastBlockAddress = blockAddress;
+        lastBlock = block;
+        return block;
+    }
+
+    /**
+     * Ensures that the blocks covering a given range of memory are cached. Each run of adjacent blocks not already in
+     * the cache is fetched with a single request to the VM.
+     */
+    void prefetch(Address address, int size) {
+        validate();
+        final long start = address.toLong() & ~(BLOCK_SIZE - 1);
+        final long end = address.toLong() + size;
+        long blockAddress = start;
+        while (blockAddress < end) {
+            if (blocks.containsKey(blockAddress)) {
+                blockAddress += BLOCK_SIZE;
+                continue;
+            }
+            final long runStart = blockAddress;
+            int runLength = 0;
+            while (blockAddress < end && !blocks.containsKey(blockAddress) && runLength < MAX_BLOCKS) {
+                blockAddress += BLOCK_SIZE;
+                runLength++;
+            }
+            final byte[] bytes = new byte[runLength * BLOCK_SIZE];
+            fetch(Address.fromLong(runStart), bytes);
+            for (int i = 0; i < runLength; i++) {
+                final byte[] blockBytes = Arrays.copyOfRange(bytes, i * BLOCK_SIZE, (i + 1) * BLOCK_SIZE);
+                blocks.put(runStart + i * BLOCK_SIZE, ByteBuffer.wrap(blockBytes).order(byteOrder));
+            }
+        }
+    }
+
+    private void fetch(Address address, byte[] bytes) {
+        if (profile != null) {
+            profile.remoteFetch(bytes.length);
+        }
+        vm.readFully(address, bytes);
+    }
+
+    private static int offsetInBlock(long address) {
+        return (int) address & (BLOCK_SIZE - 1);
+    }
+
+    /**
+     * Reads a value that spans two blocks into a buffer of its own.
+     */
+    private ByteBuffer readSpanning(long address, int size) {
+        final byte[] bytes = new byte[size];
+        readBytes(address, bytes, 0, size);
+        return ByteBuffer.wrap(bytes).order(byteOrder);
+    }
+
+    /**
+     * Reads a sequence of bytes starting at a given address. A sequence too large to be held in the cache is read
+     * directly from the VM without being cached.
+     */
+    void readBytes(Address address, byte[] bytes) {
+        if (bytes.length > (MAX_BLOCKS / 2) * BLOCK_SIZE) {
+            fetch(address, bytes);
+            return;
+        }
+        prefetch(address, bytes.length);
+        readBytes(address.toLong(), bytes, 0, bytes.length);
+    }
+
+    private void readBytes(long address, byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            final int offsetInBlock = offsetInBlock(address);
+            final int n = Math.min(length, BLOCK_SIZE - offsetInBlock);
+            System.arraycopy(block(address).array(), offsetInBlock, bytes, offset, n);
+            address += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    byte readByte(Address address) {
+        final long a = address.toLong();
+        return block(a).get(offsetInBlock(a));
+    }
+
+    short readShort(Address address) {
+        final long a = address.toLong();
+        final int offset = offsetInBlock(a);
+        if (offset <= BLOCK_SIZE - 2) {
+            return block(a).getShort(offset);
+        }
+        return readSpanning(a, 2).getShort(0);
+    }
+
+    char readChar(Address address) {
+        return (char) readShort(address);
+    }
+
+    int readInt(Address address) {
+        final long a = address.toLong();
+        final int offset = offsetInBlock(a);
+        if (offset <= BLOCK_SIZE - 4) {
+            return block(a).getInt(offset);
+        }
+        return readSpanning(a, 4).getInt(0);
+    }
+
+    long readLong(Address address) {
+        final long a = address.toLong();
+        final int offset = offsetInBlock(a);
+        if (offset <= BLOCK_SIZE - 8) {
+            return block(a).getLong(offset);
+        }
+        return readSpanning(a, 8).getLong(0);
+    }
+
+    float readFloat(Address address) {
+        return Float.intBitsToFloat(readInt(address));
+    }
+
+    double readDouble(Address address) {
+        return Double.longBitsToDouble(readLong(address));
+    }
+
+    Word readWord(Address address) {
+        if (Word.widthValue() == WordWidth.BITS_64) {
+            return Address.fromLong(readLong(address));
+        }
+        return Address.fromLong(readInt(address) & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import java.util.*;
+
+import com.sun.max.tele.*;
+import com.sun.max.tele.reference.*;
+
+/**
+ * A cache of the local copies of remote {@link String}s, keyed by the origin of the remote string. The same class,
+ * field and symbol names tend to reach host code again and again, and each copy otherwise decodes the string's
+ * characters from the VM anew.
+ * <p>
+ * The cache is bounded by an estimate of the memory held by the cached strings. Once
+ * {@link #BYTE_BUDGET} is exceeded, the least recently used strings are discarded. As with the
+ * {@link RemoteMemoryCache}, the contents are discarded whenever the {@linkplain TeleProcess#epoch() epoch} of the
+ * VM's process has advanced, since the VM may have moved or collected the strings while it was running.
+ * <p>
+ * There is one cache per VM, shared by all the machines executing against it, and it is thread safe. Strings are
+ * decoded outside the cache's lock so that a slow request to the VM does not hold up other machines.
+ */
+final class RemoteStringCache {
+
+    /**
+     * The maximum estimated size in bytes of the strings retained.
+     */
+    static final long BYTE_BUDGET = Long.getLong("max.interpreter.stringCacheBytes", 1L << 20);
+
+    /**
+     * The estimated size in bytes of a string apart from its characters.
+     */
+    private static final int STRING_OVERHEAD = 64;
+
+    /**
+     * The cache of each VM. A cache does not refer to its VM so that the VM can be reclaimed.
+     */
+    private static final Map<TeleVM, RemoteStringCache> caches = new WeakHashMap<TeleVM, RemoteStringCache>();
+
+    private final LinkedHashMap<Long, String> strings = new LinkedHashMap<Long, String>(16, 0.75f, true);
+    private long bytes;
+    private long epoch = -1;
+
+    private RemoteStringCache() {
+    }
+
+    /**
+     * Gets the cache of a given VM.
+     */
+    static RemoteStringCache of(TeleVM vm) {
+        synchronized (caches) {
+            RemoteStringCache cache = caches.get(vm);
+            if (cache == null) {
+                cache = new RemoteStringCache();
+                caches.put(vm, cache);
+            }
+            return cache;
+        }
+    }
+
+    private static long sizeOf(String string) {
+        return STRING_OVERHEAD + 2L * string.length();
+    }
+
+    /**
+     * Gets a local copy of a remote string, decoding it from the VM only if it is not cached.
+     *
+     * @param profile the profile in which the hit or miss is recorded or {@code null}
+     */
+    String get(TeleVM vm, TeleReference remoteString, InterpreterProfile profile) {
+        final long epoch = vm.teleProcess().epoch();
+        final Long origin = remoteString.toOrigin().toLong();
+        synchronized (this) {
+            if (epoch > this.epoch) {
+                strings.clear();
+                bytes = 0;
+                this.epoch = epoch;
+            }
+            // A caller that read the epoch before the cache moved on to a later one bypasses the cache
+            final String string = epoch == this.epoch ? strings.get(origin) : null;
+            if (string != null) {
+                if (profile != null) {
+                    profile.stringCacheHit();
+                }
+                return string;
+            }
+        }
+        if (profile != null) {
+            profile.stringCacheMiss();
+        }
+
+        final String string = vm.getString(remoteString);
+        if (string != null && sizeOf(string) <= BYTE_BUDGET) {
+            synchronized (this) {
+                if (epoch == this.epoch && strings.put(origin, string) == null) {
+                    bytes += sizeOf(string);
+                    final Iterator<String> leastRecentlyUsed = strings.values().iterator();
+                    while (bytes > BYTE_BUDGET) {
+                        bytes -= sizeOf(leastRecentlyUsed.next());
+                        leastRecentlyUsed.remove();
+                    }
+                }
+            }
+        }
+        return string;
+    }
+}
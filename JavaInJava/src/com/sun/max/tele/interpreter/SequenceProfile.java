@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import static com.sun.cri.bytecode.Bytecodes.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A profile of the pairs and triples of opcodes executed in sequence by the interpreter. Each method's
+ * {@linkplain DecodedCode decoded code} counts how often each of its fusible sequences is executed and fuses the
+ * sequence into a {@linkplain Superinstructions superinstruction} once it is frequent. The profile is collected unless
+ * fusion is disabled or done when the code is decoded.
+ * <p>
+ * If the {@code max.interpreter.profileSequences} system property is set, the pairs and triples executed by all
+ * interpreter instances are also counted and can be {@linkplain #print(PrintStream, int) printed}, as a guide to the
+ * sequences worth adding as superinstructions. Each interpreter records into its own instance of this class, which
+ * tracks the opcodes that it has most recently executed.
+ */
+final class SequenceProfile {
+
+    /**
+     * Determines if the pairs and triples executed by all interpreters are counted.
+     */
+    static final boolean COUNTING = System.getProperty("max.interpreter.profileSequences") != null;
+
+    /**
+     * Determines if sequences are profiled.
+     */
+    static final boolean ENABLED = COUNTING || (Superinstructions.ENABLED && Superinstructions.FUSE_THRESHOLD > 0);
+
+    private static final AtomicLongArray pairCounts = new AtomicLongArray(256 * 256);
+    private static final ConcurrentMap<Integer, AtomicLong> tripleCounts = new ConcurrentHashMap<Integer, AtomicLong>();
+    private static final AtomicLong total = new AtomicLong();
+
+    private int previous = -1;
+    private int beforePrevious = -1;
+
+    /**
+     * Records the execution of an instruction following those previously recorded by this object.
+     *
+     * @param frame the frame whose current instruction is being executed
+     * @param opcode the opcode of the instruction
+     */
+    void record(ExecutionFrame frame, int opcode) {
+        if (opcode <= 0xFF) {
+            frame.recordSequence();
+        }
+        if (COUNTING) {
+            count(opcode);
+        }
+    }
+
+    private void count(int opcode) {
+        total.incrementAndGet();
+        if (opcode > 0xFF) {
+            // Superinstructions are not themselves fused
+            previous = -1;
+            beforePrevious = -1;
+            return;
+        }
+        if (previous >= 0) {
+            pairCounts.incrementAndGet((previous << 8) | opcode);
+            if (beforePrevious >= 0) {
+                final Integer key = (beforePrevious << 16) | (previous << 8) | opcode;
+                AtomicLong count = tripleCounts.get(key);
+                if (count == null) {
+                    final AtomicLong newCount = new AtomicLong();
+                    count = tripleCounts.putIfAbsent(key, newCount);
+                    if (count == null) {
+                        count = newCount;
+                    }
+                }
+                count.incrementAndGet();
+            }
+        }
+        if (isBlockEnd(opcode) || isInvokeOrReturn(opcode)) {
+            // The next instruction executed does not follow this one in the code
+            previous = -1;
+            beforePrevious = -1;
+        } else {
+            beforePrevious = previous;
+            previous = opcode;
+        }
+    }
+
+    private static boolean isInvokeOrReturn(int opcode) {
+        return (opcode >= IRETURN && opcode <= RETURN) || (opcode >= INVOKEVIRTUAL && opcode <= INVOKEINTERFACE) || opcode == ATHROW;
+    }
+
+    /**
+     * Prints the most frequently executed pairs and triples of opcodes.
+     *
+     * @param limit the maximum number of pairs and of triples to print
+     */
+    static void print(PrintStream out, int limit) {
+        final Map<Integer, Long> pairs = new HashMap<Integer, Long>();
+        for (int i = 0; i < pairCounts.length(); i++) {
+            final long count = pairCounts.get(i);
+            if (count != 0) {
+                pairs.put(i, count);
+            }
+        }
+        final Map<Integer, Long> triples = new HashMap<Integer, Long>();
+        for (Map.Entry<Integer, AtomicLong> entry : tripleCounts.entrySet()) {
+            triples.put(entry.getKey(), entry.getValue().get());
+        }
+        out.println("Executed instructions: " + total.get());
+        out.println("Most frequent pairs:");
+        print(out, pairs, 2, limit);
+        out.println("Most frequent triples:");
+        print(out, triples, 3, limit);
+    }
+
+    private static void print(PrintStream out, Map<Integer, Long> counts, int length, int limit) {
+        final List<Map.Entry<Integer, Long>> entries = new ArrayList<Map.Entry<Integer, Long>>(counts.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<Integer, Long>>() {
+            public int compare(Map.Entry<Integer, Long> o1, Map.Entry<Integer, Long> o2) {
+                return o2.getValue().compareTo(o1.getValue());
+            }
+        });
+        for (int i = 0; i < entries.size() && i < limit; i++) {
+            final Map.Entry<Integer, Long> entry = entries.get(i);
+            final StringBuilder sb = new StringBuilder("    ");
+            for (int shift = (length - 1) * 8; shift >= 0; shift -= 8) {
+                sb.append(nameOf((entry.getKey() >> shift) & 0xFF));
+                if (shift != 0) {
+                    sb.append("; ");
+                }
+            }
+            out.println(sb.append(": ").append(entry.getValue()));
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import static com.sun.cri.bytecode.Bytecodes.*;
+
+import com.sun.cri.bytecode.*;
+
+/**
+ * The superinstructions executed by the interpreter. A superinstruction replaces a commonly executed sequence of
+ * instructions in {@linkplain DecodedCode decoded code} so that the sequence is executed with a single dispatch. An
+ * occurrence of such a sequence that can be fused is fused once the {@linkplain SequenceProfile sequence profile} shows
+ * that it has been executed {@link #FUSE_THRESHOLD} times in its method.
+ * <p>
+ * Only the opcode of the first instruction in a fused sequence is replaced. The operands and the opcodes of the
+ * remaining instructions are left in place and are read by the superinstruction. Before executing the last instruction
+ * of the sequence, a superinstruction makes it the {@linkplain ExecutionFrame#enterFused(int) current} instruction so
+ * that an exception it raises is attributed to the correct bytecode index. For this to be sufficient, a sequence is
+ * only fused if:
+ * <ul>
+ * <li>none of its instructions but the last can {@linkplain Bytecodes#canTrap(int) trap} or
+ * {@linkplain Bytecodes#isBlockEnd(int) transfer control}, and</li>
+ * <li>none of its instructions but the first is the target of a branch, switch, subroutine return or exception
+ * handler.</li>
+ * </ul>
+ */
+final class Superinstructions {
+
+    private Superinstructions() {
+    }
+
+    /**
+     * {@code aload; getfield}.
+     */
+    static final int LOAD_GETFIELD = 0x100;
+
+    /**
+     * {@code aload; arraylength}.
+     */
+    static final int LOAD_ARRAYLENGTH = 0x101;
+
+    /**
+     * {@code iload; iload; if_icmp<cond>}.
+     */
+    static final int LOAD_LOAD_IF_ICMP = 0x102;
+
+    /**
+     * {@code iconst/bipush/sipush; iadd}.
+     */
+    static final int CONSTANT_IADD = 0x103;
+
+    /**
+     * One more than the largest superinstruction opcode.
+     */
+    static final int LIMIT = 0x104;
+
+    /**
+     * Determines if superinstructions are used. They can be disabled by setting the
+     * {@code max.interpreter.superinstructions} system property to {@code false}.
+     */
+    static final boolean ENABLED = !"false".equals(System.getProperty("max.interpreter.superinstructions"));
+
+    /**
+     * The number of times a fusible sequence must be executed in a method before it is fused. This is set by the
+     * {@code max.interpreter.fuseThreshold} system property. If it is 0, every fusible sequence is fused when the code
+     * is decoded and sequences are not profiled.
+     */
+    static final int FUSE_THRESHOLD = Integer.getInteger("max.interpreter.fuseThreshold", 100);
+
+    /**
+     * Gets the number of instructions replaced by a given superinstruction.
+     */
+    static int lengthOf(int superinstruction) {
+        return superinstruction == LOAD_LOAD_IF_ICMP ? 3 : 2;
+    }
+
+    /**
+     * Gets the name of a superinstruction.
+     */
+    static String nameOf(int superinstruction) {
+        switch (superinstruction) {
+            // Checkstyle: stop
+            case LOAD_GETFIELD:     return "aload_getfield";
+            case LOAD_ARRAYLENGTH:  return "aload_arraylength";
+            case LOAD_LOAD_IF_ICMP: return "iload_iload_if_icmp";
+            case CONSTANT_IADD:     return "iconst_iadd";
+            default:                return Bytecodes.nameOf(superinstruction);
+            // Checkstyle: resume
+        }
+    }
+
+    /**
+     * Finds the fusible sequences of instructions in some decoded code. The sequences found do not overlap, so that
+     * any subset of them can be fused.
+     *
+     * @param opcodes the opcodes of the decoded instructions
+     * @param isLeader specifies the instructions that are the target of a control transfer other than by falling
+     *            through from the preceding instruction
+     * @return the superinstruction that can replace the sequence starting at each instruction or 0 if no sequence
+     *         starts there, or {@code null} if the code has no fusible sequence
+     */
+    static int[] fusible(int[] opcodes, boolean[] isLeader) {
+        if (!ENABLED) {
+            return null;
+        }
+        int[] fusions = null;
+        for (int i = 0; i < opcodes.length; i++) {
+            final int superinstruction = match(opcodes, i);
+            if (superinstruction >= 0) {
+                final int length = lengthOf(superinstruction);
+                if (canFuse(opcodes, isLeader, i, length)) {
+                    if (fusions == null) {
+                        fusions = new int[opcodes.length];
+                    }
+                    fusions[i] = superinstruction;
+                    i += length - 1;
+                }
+            }
+        }
+        return fusions;
+    }
+
+    private static int match(int[] opcodes, int i) {
+        if (i + 1 >= opcodes.length) {
+            return -1;
+        }
+        final int first = opcodes[i];
+        final int second = opcodes[i + 1];
+        if (first == ALOAD || (first >= ALOAD_0 && first <= ALOAD_3)) {
+            if (second == GETFIELD) {
+                return LOAD_GETFIELD;
+            }
+            if (second == ARRAYLENGTH) {
+                return LOAD_ARRAYLENGTH;
+            }
+        } else if (isIntLoad(first)) {
+            if (isIntLoad(second) && i + 2 < opcodes.length && opcodes[i + 2] >= IF_ICMPEQ && opcodes[i + 2] <= IF_ICMPLE) {
+                return LOAD_LOAD_IF_ICMP;
+            }
+        } else if ((first >= ICONST_M1 && first <= ICONST_5) || first == BIPUSH || first == SIPUSH) {
+            if (second == IADD) {
+                return CONSTANT_IADD;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isIntLoad(int opcode) {
+        return opcode == ILOAD || (opcode >= ILOAD_0 && opcode <= ILOAD_3);
+    }
+
+    private static boolean canFuse(int[] opcodes, boolean[] isLeader, int start, int length) {
+        final int last = start + length - 1;
+        for (int i = start; i <= last; i++) {
+            final int opcode = opcodes[i];
+            if (opcode > 0xFF) {
+                return false;
+            }
+            if (i != start && isLeader[i]) {
+                return false;
+            }
+            if (i != last && (canTrap(opcode) || isBlockEnd(opcode) || isBranch(opcode))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
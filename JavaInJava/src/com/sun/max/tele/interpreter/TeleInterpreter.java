@@ -55,13 +55,57 @@ import com.sun.max.vm.value.*;
  */
 public final class TeleInterpreter {
 
+    /**
+     * The mechanisms by which the interpreter can dispatch to the code that executes an instruction.
+     */
+    public static enum Dispatch {
+        /**
+         * Dispatch with a single {@code switch} statement over all opcodes.
+         */
+        SWITCH,
+
+        /**
+         * Dispatch through a {@linkplain HandlerTable table} with a separate handler object for each opcode.
+         */
+        HANDLER_TABLE;
+
+        /**
+         * The dispatch used when none is specified. This is {@link #SWITCH} unless overridden by the
+         * {@code max.interpreter.dispatch} system property.
+         */
+        public static final Dispatch DEFAULT;
+
+        static {
+            final String value = System.getProperty("max.interpreter.dispatch");
+            DEFAULT = value == null ? SWITCH : valueOf(value.toUpperCase());
+        }
+    }
+
     private final TeleVM teleVM;
+    private final Dispatch dispatch;
+    private final InterpreterProfile profile;
 
     private Machine machine;
+    private ClassMethodActor method;
     private Value returnValue;
 
     public TeleInterpreter(TeleVM teleVM) {
+        this(teleVM, Dispatch.DEFAULT);
+    }
+
+    public TeleInterpreter(TeleVM teleVM, Dispatch dispatch) {
+        this(teleVM, dispatch, null);
+    }
+
+    /**
+     * Creates an interpreter that records its execution in a given profile.
+     *
+     * @param profile the profile to update or {@code null} if execution is not to be profiled
+     */
+    public TeleInterpreter(TeleVM teleVM, Dispatch dispatch, InterpreterProfile profile) {
         this.teleVM = teleVM;
+        this.dispatch = dispatch;
+        this.profile = profile;
     }
 
     /**
@@ -75,12 +119,138 @@ public final class TeleInterpreter {
      * @throws TeleInterpreterException if an uncaught exception occurs during execution of the method
      */
     public static Value execute(TeleVM teleVM, ClassMethodActor classMethodActor, Value... args) throws TeleInterpreterException {
-        return new TeleInterpreter(teleVM).run(classMethodActor, args);
+        return TeleInterpreterPool.shared(teleVM).execute(Dispatch.DEFAULT, null, null, classMethodActor, args);
+    }
+
+    /**
+     * Creates an interpreter instance that uses a given dispatch mechanism and uses it to execute a given method with
+     * the given arguments.
+     *
+     * @see #execute(TeleVM, ClassMethodActor, Value...)
+     */
+    public static Value execute(TeleVM teleVM, Dispatch dispatch, ClassMethodActor classMethodActor, Value... args) throws TeleInterpreterException {
+        return TeleInterpreterPool.shared(teleVM).execute(dispatch, null, null, classMethodActor, args);
+    }
+
+    /**
+     * Creates an interpreter instance that records its execution in a given profile and uses it to execute a given
+     * method with the given arguments.
+     *
+     * @see #execute(TeleVM, ClassMethodActor, Value...)
+     */
+    public static Value execute(TeleVM teleVM, InterpreterProfile profile, ClassMethodActor classMethodActor, Value... args) throws TeleInterpreterException {
+        return TeleInterpreterPool.shared(teleVM).execute(Dispatch.DEFAULT, null, profile, classMethodActor, args);
+    }
+
+    /**
+     * Creates an interpreter instance and uses it to execute a given method with the given arguments within a given
+     * budget.
+     *
+     * @throws ExecutionInterruptedException if the budget is exhausted or cancelled before the method returns
+     * @see #execute(TeleVM, ClassMethodActor, Value...)
+     */
+    public static Value execute(TeleVM teleVM, ExecutionBudget budget, ClassMethodActor classMethodActor, Value... args) throws TeleInterpreterException {
+        return TeleInterpreterPool.shared(teleVM).execute(Dispatch.DEFAULT, budget, null, classMethodActor, args);
+    }
+
+    /**
+     * Creates an interpreter instance and uses it to perform several evaluations in separate threads of a single
+     * machine. The threads are scheduled in turn, each running for up to {@link #TIME_SLICE} instructions or until it
+     * blocks on a monitor held by another thread. This method returns once all the evaluations are
+     * {@linkplain Evaluation#isDone() done}.
+     *
+     * @param teleVM the remote VM
+     */
+    public static void execute(TeleVM teleVM, Evaluation... evaluations) {
+        TeleInterpreterPool.shared(teleVM).execute(evaluations);
+    }
+
+    /**
+     * The number of instructions a thread executes before the next thread is scheduled when several
+     * {@linkplain Evaluation evaluations} are interleaved. This can be changed with the
+     * {@code max.interpreter.timeSlice} system property.
+     */
+    public static final int TIME_SLICE = Integer.getInteger("max.interpreter.timeSlice", 10000);
+
+    /**
+     * Discards the receiver types cached at all interpreted {@code invokevirtual} and {@code invokeinterface} call
+     * sites. This must be called if the method selected for a receiver type may have changed, for example after a
+     * class has been redefined.
+     */
+    public static void invalidateInlineCaches() {
+        InlineCache.invalidateAll();
+    }
+
+    /**
+     * Prints the pairs and triples of opcodes most frequently executed by the interpreter. These are only counted if
+     * the {@code max.interpreter.profileSequences} system property is set.
+     *
+     * @param limit the maximum number of pairs and of triples to print
+     */
+    public static void printSequenceProfile(PrintStream out, int limit) {
+        SequenceProfile.print(out, limit);
+    }
+
+    /**
+     * Executes a method on a given machine, which must have no frames. If the method is pure, its result may be taken
+     * from or recorded by the {@linkplain Memoizer memoizer} instead.
+     */
+    Value run(Machine machine, ClassMethodActor classMethodActor, Value... arguments) throws TeleInterpreterException {
+        final Memoizer.Key memoizerKey = Memoizer.keyFor(teleVM, classMethodActor, arguments);
+        if (memoizerKey != null) {
+            final Value memoized = Memoizer.lookup(teleVM, memoizerKey);
+            if (memoized != null) {
+                return memoized;
+            }
+        }
+
+        this.machine = machine;
+        this.method = classMethodActor;
+        enter(classMethodActor, arguments);
+        if (profile != null) {
+            machine.setProfile(profile);
+            profile.start(frame());
+        }
+        final Value result = proceed();
+        if (memoizerKey != null) {
+            Memoizer.record(teleVM, memoizerKey, result);
+        }
+        return result;
+    }
+
+    /**
+     * Continues a run that was stopped because its budget was exhausted or cancelled.
+     *
+     * @param budget the budget for the remainder of the run or {@code null} for none
+     */
+    Value resume(ExecutionBudget budget) throws TeleInterpreterException {
+        machine.setBudget(budget);
+        return proceed();
     }
 
-    private Value run(ClassMethodActor classMethodActor, Value... arguments) throws TeleInterpreterException {
+    private Value proceed() throws TeleInterpreterException {
+        final HandlerTable.Handler[] handlers = dispatch == Dispatch.HANDLER_TABLE ? HandlerTable.HANDLERS : null;
+        final SequenceProfile sequenceProfile = SequenceProfile.ENABLED ? new SequenceProfile() : null;
+        final ExecutionBudget budget = machine.budget();
+        if (budget != null) {
+            budget.start();
+        }
+        try {
+            if (profile == null) {
+                interpret(handlers, sequenceProfile);
+            } else {
+                interpretProfiled(handlers, sequenceProfile);
+            }
+        } catch (ExecutionBudget.Exhausted exhausted) {
+            throw new ExecutionInterruptedException(exhausted.limit, this, machine);
+        }
+        return result(method);
+    }
 
-        machine = new Machine(teleVM);
+    /**
+     * Pushes the frame for a method on the current thread and initializes its parameters.
+     */
+    private void enter(ClassMethodActor classMethodActor, Value... arguments) {
         machine.pushFrame(classMethodActor);
         int j = 0;
         for (int i = 0; i < arguments.length; i++, j++) {
@@ -89,218 +259,519 @@ public final class TeleInterpreter {
                 j++;
             }
         }
+    }
+
+    /**
+     * Converts the value returned by the method in the outermost frame of the current thread to the method's result.
+     */
+    private Value result(ClassMethodActor classMethodActor) {
+        if (returnValue instanceof TeleReferenceValue) {
+            returnValue = TeleReferenceValue.from(teleVM, machine.makeLocalReference((TeleReference) returnValue.asReference()));
+        }
+
+        Kind resultKind = classMethodActor.resultKind();
+        if (resultKind.stackKind == Kind.INT) {
+            returnValue = resultKind.convert(returnValue);
+        }
+        return returnValue;
+    }
 
+    /**
+     * Executes instructions until the method in the outermost frame returns.
+     */
+    private void interpret(HandlerTable.Handler[] handlers, SequenceProfile sequenceProfile) throws TeleInterpreterException {
         int opcode;
         MethodStatus status;
 
         while (true) {
             opcode = machine.readOpcode();
+            if (sequenceProfile != null) {
+                sequenceProfile.record(frame(), opcode);
+            }
 
             try {
+                status = handlers == null ? interpret(opcode) : handlers[opcode].execute(this);
 
-                boolean isWide = false;
-                if (opcode == WIDE) {
-                    opcode = machine.readOpcode();
-                    isWide = true;
+                if (status == MethodStatus.METHOD_END) {
+                    break;
                 }
+            } catch (ExecutionBudget.Exhausted exhausted) {
+                throw exhausted;
+            } catch (Machine.ThrownException thrownException) {
+                handleException(thrownException);
+            } catch (TeleInterpreterException executionException) {
+                handleException(executionException);
+            } catch (Throwable throwable) {
+                handleException(throwable);
+            }
+        }
+    }
 
-                status = interpret(opcode, isWide);
+    /**
+     * A copy of {@link #interpret(HandlerTable.Handler[], SequenceProfile)} that also records the execution in
+     * {@link #profile}. It is kept separate so that the cost of profiling is not borne when it is disabled.
+     */
+    private void interpretProfiled(HandlerTable.Handler[] handlers, SequenceProfile sequenceProfile) throws TeleInterpreterException {
+        int opcode;
+        MethodStatus status;
+        ExecutionFrame frame = frame();
+        ExecutionFrame nextFrame;
+
+        while (true) {
+            opcode = machine.readOpcode();
+            if (sequenceProfile != null) {
+                sequenceProfile.record(frame(), opcode);
+            }
+            profile.executed(opcode);
+
+            try {
+                status = handlers == null ? interpret(opcode) : handlers[opcode].execute(this);
 
                 if (status == MethodStatus.METHOD_END) {
+                    profile.transfer(frame, null);
                     break;
                 }
+            } catch (ExecutionBudget.Exhausted exhausted) {
+                // The instruction completed, possibly entering a method, before the run was stopped
+                nextFrame = frame();
+                if (nextFrame != frame) {
+                    profile.transfer(frame, nextFrame);
+                }
+                throw exhausted;
+            } catch (Machine.ThrownException thrownException) {
+                profile.exceptionDispatched(thrownException.throwable.getClass());
+                try {
+                    handleException(thrownException);
+                } catch (TeleInterpreterException unhandledException) {
+                    profile.transfer(frame, null);
+                    throw unhandledException;
+                }
             } catch (TeleInterpreterException executionException) {
-                ReferenceValue throwableReference = executionException.throwableReference();
-                boolean handled = machine.handleException(throwableReference); //if this succeeds we keep looping
-                if (!handled) {
-                    throw executionException;
+                profile.exceptionDispatched(executionException.throwableType());
+                try {
+                    handleException(executionException);
+                } catch (TeleInterpreterException unhandledException) {
+                    profile.transfer(frame, null);
+                    throw unhandledException;
                 }
             } catch (Throwable throwable) {
-                ReferenceValue throwableReference = ReferenceValue.from(throwable);
-                boolean handled = machine.handleException(throwableReference); //if this succeeds we keep looping
-                if (!handled) {
-                    throw new TeleInterpreterException(throwable, machine);
+                profile.exceptionDispatched(throwable.getClass());
+                try {
+                    handleException(throwable);
+                } catch (TeleInterpreterException unhandledException) {
+                    profile.transfer(frame, null);
+                    throw unhandledException;
                 }
             }
+
+            nextFrame = frame();
+            if (nextFrame != frame) {
+                profile.transfer(frame, nextFrame);
+                frame = nextFrame;
+            }
+        }
+    }
+
+    /**
+     * Performs several evaluations in separate threads of a given machine, which must have no frames.
+     */
+    void run(Machine machine, Evaluation... evaluations) {
+        this.machine = machine;
+        for (Evaluation evaluation : evaluations) {
+            final ExecutionThread thread = machine.newThread(java.lang.Thread.NORM_PRIORITY, ExecutionThread.ThreadType.NORMAL_THREAD);
+            thread.evaluation = evaluation;
+            machine.activate(thread);
+            enter(evaluation.method, evaluation.arguments);
         }
 
-        if (returnValue instanceof TeleReferenceValue) {
-            returnValue = TeleReferenceValue.from(teleVM, machine.makeLocalReference((TeleReference) returnValue.asReference()));
+        final HandlerTable.Handler[] handlers = dispatch == Dispatch.HANDLER_TABLE ? HandlerTable.HANDLERS : null;
+        final SequenceProfile sequenceProfile = SequenceProfile.ENABLED ? new SequenceProfile() : null;
+        while (machine.scheduleNext()) {
+            final ExecutionThread thread = machine.currentThread();
+            final Evaluation evaluation = thread.evaluation;
+            try {
+                if (interpretSlice(handlers, sequenceProfile, thread)) {
+                    machine.terminate(thread);
+                    evaluation.complete(result(evaluation.method));
+                }
+            } catch (TeleInterpreterException executionException) {
+                machine.terminate(thread);
+                evaluation.fail(executionException);
+            }
         }
 
-        Kind resultKind = classMethodActor.resultKind();
-        if (resultKind.stackKind == Kind.INT) {
-            returnValue = resultKind.convert(returnValue);
+        // Any threads left are blocked on monitors held by each other
+        for (ExecutionThread thread : machine.liveThreads()) {
+            machine.activate(thread);
+            final Evaluation evaluation = thread.evaluation;
+            evaluation.fail(new TeleInterpreterException(new IllegalMonitorStateException("Deadlock in evaluation of " + evaluation.method), machine));
+            machine.terminate(thread);
         }
-        return returnValue;
     }
 
-    private Value pop() {
-        return machine.pop();
+    /**
+     * Executes instructions in a given thread until the method in its outermost frame returns, it blocks on a monitor
+     * or it has executed {@link #TIME_SLICE} instructions.
+     *
+     * @return {@code true} if the method in the outermost frame returned
+     */
+    private boolean interpretSlice(HandlerTable.Handler[] handlers, SequenceProfile sequenceProfile, ExecutionThread thread) throws TeleInterpreterException {
+        int opcode;
+        MethodStatus status;
+
+        for (int n = TIME_SLICE; n > 0 && thread.blockedOn == null; n--) {
+            opcode = machine.readOpcode();
+            if (sequenceProfile != null) {
+                sequenceProfile.record(frame(), opcode);
+            }
+
+            try {
+                status = handlers == null ? interpret(opcode) : handlers[opcode].execute(this);
+
+                if (status == MethodStatus.METHOD_END) {
+                    return true;
+                }
+            } catch (Machine.ThrownException thrownException) {
+                handleException(thrownException);
+            } catch (TeleInterpreterException executionException) {
+                handleException(executionException);
+            } catch (Throwable throwable) {
+                handleException(throwable);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Transfers control to the handler for an exception thrown by the interpreted code or raised on its behalf. The
+     * exception is only described by a {@link TeleInterpreterException} if it is not handled.
+     *
+     * @throws TeleInterpreterException if there is no handler for the exception in the interpreted call stack
+     */
+    private void handleException(Machine.ThrownException thrownException) throws TeleInterpreterException {
+        if (!machine.handleException(thrownException.throwableReference)) {
+            throw new TeleInterpreterException(thrownException.throwable, machine);
+        }
     }
 
-    private Value popCheckZero() throws TeleInterpreterException {
-        Value value = machine.pop();
-        if (value.isZero()) {
-            machine.raiseException(new ArithmeticException("Division by zero"));
+    /**
+     * Transfers control to the handler for an exception raised by the interpreted code.
+     *
+     * @throws TeleInterpreterException if there is no handler for the exception in the interpreted call stack
+     */
+    private void handleException(TeleInterpreterException executionException) throws TeleInterpreterException {
+        ReferenceValue throwableReference = executionException.throwableReference();
+        boolean handled = machine.handleException(throwableReference); //if this succeeds we keep looping
+        if (!handled) {
+            throw executionException;
+        }
+    }
+
+    /**
+     * Transfers control to the handler for an exception raised by the interpreter while executing an instruction.
+     *
+     * @throws TeleInterpreterException if there is no handler for the exception in the interpreted call stack
+     */
+    private void handleException(Throwable throwable) throws TeleInterpreterException {
+        ReferenceValue throwableReference = ReferenceValue.from(throwable);
+        boolean handled = machine.handleException(throwableReference); //if this succeeds we keep looping
+        if (!handled) {
+            throw new TeleInterpreterException(throwable, machine);
         }
-        return value;
     }
 
-    private void push(Value value) {
-        machine.push(value);
+    ExecutionFrame frame() {
+        return machine.frame();
     }
 
-    private void jumpIf(boolean condition, int offset) {
-        if (condition) {
-            machine.jump(offset);
+    void push(Value value) {
+        frame().push(value);
+    }
+
+    void pushInt(int value) {
+        frame().pushInt(value);
+    }
+
+    int popInt() {
+        return frame().popInt();
+    }
+
+    int peekInt(int depth) {
+        return frame().peekInt(depth);
+    }
+
+    void pushLong(long value) {
+        frame().pushLong(value);
+    }
+
+    long popLong() {
+        return frame().popLong();
+    }
+
+    void pushFloat(float value) {
+        frame().pushFloat(value);
+    }
+
+    float popFloat() {
+        return frame().popFloat();
+    }
+
+    void pushDouble(double value) {
+        frame().pushDouble(value);
+    }
+
+    double popDouble() {
+        return frame().popDouble();
+    }
+
+    void pushReference(Value value) {
+        frame().pushReference(value);
+    }
+
+    Value popReference() {
+        return frame().popReference();
+    }
+
+    private void divisionByZero() throws TeleInterpreterException {
+        machine.raiseException(new ArithmeticException("Division by zero"));
+    }
+
+    int popIntDivisor() throws TeleInterpreterException {
+        final int value = popInt();
+        if (value == 0) {
+            divisionByZero();
+        }
+        return value;
+    }
+
+    long popLongDivisor() throws TeleInterpreterException {
+        final long value = popLong();
+        if (value == 0) {
+            divisionByZero();
         }
+        return value;
     }
 
-    private void push(int value) {
-        push(IntValue.from(value));
+    float popFloatDivisor() throws TeleInterpreterException {
+        final float value = popFloat();
+        if (value == 0) {
+            divisionByZero();
+        }
+        return value;
     }
 
-    private void setLocal(int index, Value value) {
-        machine.setLocal(index, value);
+    double popDoubleDivisor() throws TeleInterpreterException {
+        final double value = popDouble();
+        if (value == 0) {
+            divisionByZero();
+        }
+        return value;
     }
 
-    private Value local(int index) {
-        return machine.getLocal(index);
+    void jump(int target) {
+        machine.jump(target);
     }
 
-    private short readS2() {
-        return machine.readShort();
+    void jumpIf(boolean condition, int target) {
+        if (condition) {
+            machine.jump(target);
+        }
     }
 
-    private byte readS1() {
-        return machine.readByte();
+    private void setLocal(int index, Value value) {
+        machine.setLocal(index, value);
     }
 
-    private int readU2() {
-        return machine.readShort() & 0xffff;
+    int operand() {
+        return machine.operand();
     }
 
-    private int readU1() {
-        return machine.readByte() & 0xff;
+    int operand2() {
+        return machine.operand2();
     }
 
-    private void arrayLoad(Kind kind) throws TeleInterpreterException {
-        int index = machine.pop().asInt();
-        Reference array = machine.pop().asReference();
+    /**
+     * Pops an array reference off the operand stack and checks that it is non-null and that a given index is within
+     * its bounds.
+     */
+    private Reference popArray(int index) throws TeleInterpreterException {
+        Reference array = popReference().asReference();
 
         if (array.isZero()) {
             machine.raiseException(new NullPointerException());
         }
 
-        if (Layout.readArrayLength(array) <= index || index < 0) {
+        if (machine.arrayLength(array) <= index || index < 0) {
             machine.raiseException(new ArrayIndexOutOfBoundsException());
         }
+        return array;
+    }
+
+    /**
+     * Pops an array that is to be written, replacing a remote primitive array by its local copy.
+     */
+    private Reference popWritableArray(int index) throws TeleInterpreterException {
+        return machine.writableArray(popArray(index));
+    }
+
+    void arrayLoad(Kind kind) throws TeleInterpreterException {
+        int index = popInt();
+        Reference array = machine.readableArray(popArray(index));
+
+        if (kind != Kind.REFERENCE && Machine.isRemote(array)) {
+            machine.pushRemoteArrayElement((TeleReference) array, index, kind);
+            return;
+        }
 
         switch (kind.asEnum) {
             // Checkstyle: stop
             case BYTE:
                 if (machine.toReferenceValue(array).getClassActor() == ClassRegistry.BOOLEAN_ARRAY) {
-                    push(Layout.getBoolean(array, index) ? IntValue.ONE : IntValue.ZERO);
+                    pushInt(Layout.getBoolean(array, index) ? 1 : 0);
                 } else {
-                    push(IntValue.from(Layout.getByte(array, index)));
+                    pushInt(Layout.getByte(array, index));
                 }
                 break;
-            case CHAR:      push(IntValue.from(Layout.getChar(array, index))); break;
-            case SHORT:     push(IntValue.from(Layout.getShort(array, index))); break;
-            case INT:       push(IntValue.from(Layout.getInt(array, index))); break;
-            case LONG:      push(LongValue.from(Layout.getLong(array, index))); break;
-            case FLOAT:     push(FloatValue.from(Layout.getFloat(array, index))); break;
-            case DOUBLE:    push(DoubleValue.from(Layout.getDouble(array, index))); break;
-            case REFERENCE: push(machine.toReferenceValue(Layout.getReference(array, index))); break;
+            case CHAR:      pushInt(Layout.getChar(array, index)); break;
+            case SHORT:     pushInt(Layout.getShort(array, index)); break;
+            case INT:       pushInt(Layout.getInt(array, index)); break;
+            case LONG:      pushLong(Layout.getLong(array, index)); break;
+            case FLOAT:     pushFloat(Layout.getFloat(array, index)); break;
+            case DOUBLE:    pushDouble(Layout.getDouble(array, index)); break;
+            case REFERENCE: pushReference(machine.toReferenceValue(Layout.getReference(array, index))); break;
             default:        machine.raiseException(new ClassFormatError("Invalid array kind: " + kind));
             // Checkstyle: resume
         }
     }
 
-    private void arrayStore(Kind kind) throws TeleInterpreterException {
-        Value val = pop();
-        int index = pop().toInt();
-        Reference array = pop().asReference();
-
-        if (array.isZero()) {
-            machine.raiseException(new NullPointerException());
-        }
-
-        if (Layout.readArrayLength(array) <= index || index < 0) {
-            machine.raiseException(new ArrayIndexOutOfBoundsException());
-        }
+    void intArrayStore(Kind kind) throws TeleInterpreterException {
+        int value = popInt();
+        int index = popInt();
+        Reference array = popWritableArray(index);
 
         switch (kind.asEnum) {
             // Checkstyle: stop
-            case BYTE:      Layout.setByte(array, index, val.toByte()); break;
-            case CHAR:      Layout.setChar(array, index, val.toChar()); break;
-            case SHORT:     Layout.setShort(array, index, val.toShort()); break;
-            case INT:       Layout.setInt(array, index, val.toInt()); break;
-            case LONG:      Layout.setLong(array, index, val.toLong()); break;
-            case FLOAT:     Layout.setFloat(array, index, val.toFloat()); break;
-            case DOUBLE:    Layout.setDouble(array, index, val.toDouble()); break;
-            case REFERENCE: Layout.setReference(array, index, val.asReference()); break;
+            case BYTE:      Layout.setByte(array, index, (byte) value); break;
+            case CHAR:      Layout.setChar(array, index, (char) value); break;
+            case SHORT:     Layout.setShort(array, index, (short) value); break;
+            case INT:       Layout.setInt(array, index, value); break;
             default:        machine.raiseException(new ClassFormatError("Invalid array kind: " + kind));
             // Checkstyle: resume
         }
     }
 
+    void longArrayStore() throws TeleInterpreterException {
+        long value = popLong();
+        int index = popInt();
+        Layout.setLong(popWritableArray(index), index, value);
+    }
+
+    void floatArrayStore() throws TeleInterpreterException {
+        float value = popFloat();
+        int index = popInt();
+        Layout.setFloat(popWritableArray(index), index, value);
+    }
+
+    void doubleArrayStore() throws TeleInterpreterException {
+        double value = popDouble();
+        int index = popInt();
+        Layout.setDouble(popWritableArray(index), index, value);
+    }
+
+    void referenceArrayStore() throws TeleInterpreterException {
+        Value value = popReference();
+        int index = popInt();
+        Layout.setReference(popArray(index), index, value.asReference());
+    }
+
+    /**
+     * Selects the method invoked by an {@code invokevirtual} for a given receiver type. The result is only returned if
+     * it can be invoked and so may be recorded in an {@linkplain InlineCache inline cache}.
+     */
+    private ClassMethodActor selectVirtualMethod(ClassActor dynamicClass, ClassMethodActor methodActor) throws TeleInterpreterException {
+        final VirtualMethodActor dynamicMethodActor = dynamicClass.findVirtualMethodActor(methodActor);
+        if (dynamicMethodActor == null || dynamicMethodActor.isAbstract()) {
+            machine.raiseException(new AbstractMethodError());
+        }
+        return dynamicMethodActor;
+    }
+
+    /**
+     * Selects the method invoked by an {@code invokeinterface} for a given receiver type. The result is only returned
+     * if it can be invoked and so may be recorded in an {@linkplain InlineCache inline cache}.
+     */
+    private ClassMethodActor selectInterfaceMethod(ClassActor dynamicClass, InterfaceMethodActor methodActor) throws TeleInterpreterException {
+        if (!dynamicClass.getAllInterfaceActors().contains((InterfaceActor) methodActor.holder())) {
+            machine.raiseException(new IncompatibleClassChangeError(dynamicClass + " does not implement " + methodActor.holder()));
+        }
+
+        final VirtualMethodActor dynamicMethodActor = dynamicClass.findVirtualMethodActor(methodActor);
+
+        if (dynamicMethodActor == null) {
+            machine.raiseException(new AbstractMethodError("No such method " + methodActor + " found in " + dynamicClass));
+        } else if (dynamicMethodActor.isAbstract()) {
+            machine.raiseException(new AbstractMethodError("Method " + dynamicMethodActor + " is abstract in " + dynamicClass));
+        } else if (!dynamicMethodActor.isPublic()) {
+            machine.raiseException(new IllegalAccessError("Method " + dynamicMethodActor + " is not public in " + dynamicClass));
+        }
+        return dynamicMethodActor;
+    }
+
     private int minus1IfWordWidth(int bitPosition) {
         return bitPosition == Word.widthValue().numberOfBits ? -1 : bitPosition;
     }
 
-    private MethodStatus interpret(int opcode, boolean isWide) throws Throwable {
+    private MethodStatus interpret(int opcode) throws Throwable {
         switch (opcode) {
             // Checkstyle: stop
             case NOP:                break;
 
-            case ACONST_NULL:        push(ReferenceValue.NULL); break;
-            case ICONST_M1:          push(IntValue.from(-1));   break;
-            case ICONST_0:           push(IntValue.ZERO); break;
-            case ICONST_1:           push(IntValue.ONE); break;
-            case ICONST_2:           push(IntValue.TWO); break;
-            case ICONST_3:           push(IntValue.THREE); break;
-            case ICONST_4:           push(IntValue.FOUR); break;
-            case ICONST_5:           push(IntValue.FIVE); break;
-            case LCONST_0:           push(LongValue.ZERO); break;
-            case LCONST_1:           push(LongValue.ONE); break;
-            case FCONST_0:           push(FloatValue.ZERO); break;
-            case FCONST_1:           push(FloatValue.ONE); break;
-            case FCONST_2:           push(FloatValue.TWO); break;
-            case DCONST_0:           push(DoubleValue.ZERO); break;
-            case DCONST_1:           push(DoubleValue.ONE); break;
-            case BIPUSH:             push(IntValue.from(readS1())); break;
-            case SIPUSH:             push(IntValue.from(readS2())); break;
-            case LDC:                push(machine.resolveConstantReference(readU1())); break;
+            case ACONST_NULL:        pushReference(ReferenceValue.NULL); break;
+            case ICONST_M1:          pushInt(-1); break;
+            case ICONST_0:           pushInt(0); break;
+            case ICONST_1:           pushInt(1); break;
+            case ICONST_2:           pushInt(2); break;
+            case ICONST_3:           pushInt(3); break;
+            case ICONST_4:           pushInt(4); break;
+            case ICONST_5:           pushInt(5); break;
+            case LCONST_0:           pushLong(0L); break;
+            case LCONST_1:           pushLong(1L); break;
+            case FCONST_0:           pushFloat(0.0F); break;
+            case FCONST_1:           pushFloat(1.0F); break;
+            case FCONST_2:           pushFloat(2.0F); break;
+            case DCONST_0:           pushDouble(0.0D); break;
+            case DCONST_1:           pushDouble(1.0D); break;
+            case BIPUSH:
+            case SIPUSH:             pushInt(operand()); break;
+            case LDC:
             case LDC_W:
-            case LDC2_W:             push(machine.resolveConstantReference(readU2())); break;
-            case ILOAD:
-            case LLOAD:
-            case FLOAD:
-            case DLOAD:
+            case LDC2_W:             loadConstant(); break;
+            case ILOAD:              pushInt(frame().getIntLocal(operand())); break;
+            case LLOAD:              pushLong(frame().getLongLocal(operand())); break;
+            case FLOAD:              pushFloat(frame().getFloatLocal(operand())); break;
+            case DLOAD:              pushDouble(frame().getDoubleLocal(operand())); break;
             case WLOAD:
-            case ALOAD:              push(local(isWide ? readU2() : readU1())); break;
+            case ALOAD:              frame().loadSlot(operand()); break;
             case ILOAD_0:
             case ILOAD_1:
             case ILOAD_2:
-            case ILOAD_3:            push(local(opcode - ILOAD_0)); break;
+            case ILOAD_3:            pushInt(frame().getIntLocal(opcode - ILOAD_0)); break;
             case LLOAD_0:
             case LLOAD_1:
             case LLOAD_2:
-            case LLOAD_3:            push(local(opcode - LLOAD_0)); break;
+            case LLOAD_3:            pushLong(frame().getLongLocal(opcode - LLOAD_0)); break;
             case FLOAD_0:
             case FLOAD_1:
             case FLOAD_2:
-            case FLOAD_3:            push(local(opcode - FLOAD_0)); break;
+            case FLOAD_3:            pushFloat(frame().getFloatLocal(opcode - FLOAD_0)); break;
             case DLOAD_0:
             case DLOAD_1:
             case DLOAD_2:
-            case DLOAD_3:            push(local(opcode - DLOAD_0)); break;
+            case DLOAD_3:            pushDouble(frame().getDoubleLocal(opcode - DLOAD_0)); break;
             case ALOAD_0:
             case ALOAD_1:
             case ALOAD_2:
-            case ALOAD_3:            push(local(opcode - ALOAD_0)); break;
+            case ALOAD_3:            frame().loadSlot(opcode - ALOAD_0); break;
             case IALOAD:             arrayLoad(Kind.INT); break;
             case LALOAD:             arrayLoad(Kind.LONG); break;
             case FALOAD:             arrayLoad(Kind.FLOAT); break;
@@ -309,751 +780,587 @@ public final class TeleInterpreter {
             case BALOAD:             arrayLoad(Kind.BYTE); break;
             case CALOAD:             arrayLoad(Kind.CHAR); break;
             case SALOAD:             arrayLoad(Kind.SHORT); break;
-            case ISTORE:
-            case LSTORE:
-            case FSTORE:
-            case DSTORE:
-            case ASTORE:             setLocal(isWide ? readU2() : readU1(), pop()); break;
+            case ISTORE:             frame().setIntLocal(operand(), popInt()); break;
+            case LSTORE:             frame().setLongLocal(operand(), popLong()); break;
+            case FSTORE:             frame().setFloatLocal(operand(), popFloat()); break;
+            case DSTORE:             frame().setDoubleLocal(operand(), popDouble()); break;
+            case ASTORE:             frame().storeSlot(operand()); break;
             case ISTORE_0:
             case ISTORE_1:
             case ISTORE_2:
-            case ISTORE_3:           setLocal(opcode - ISTORE_0, pop()); break;
+            case ISTORE_3:           frame().setIntLocal(opcode - ISTORE_0, popInt()); break;
             case LSTORE_0:
             case LSTORE_1:
             case LSTORE_2:
-            case LSTORE_3:           setLocal(opcode - LSTORE_0, pop()); break;
+            case LSTORE_3:           frame().setLongLocal(opcode - LSTORE_0, popLong()); break;
             case FSTORE_0:
             case FSTORE_1:
             case FSTORE_2:
-            case FSTORE_3:           setLocal(opcode - FSTORE_0, pop()); break;
+            case FSTORE_3:           frame().setFloatLocal(opcode - FSTORE_0, popFloat()); break;
             case DSTORE_0:
             case DSTORE_1:
             case DSTORE_2:
-            case DSTORE_3:           setLocal(opcode - DSTORE_0, pop()); break;
+            case DSTORE_3:           frame().setDoubleLocal(opcode - DSTORE_0, popDouble()); break;
             case ASTORE_0:
             case ASTORE_1:
             case ASTORE_2:
-            case ASTORE_3:           setLocal(opcode - ASTORE_0, pop()); break;
-            case IASTORE:            arrayStore(Kind.INT); break;
-            case LASTORE:            arrayStore(Kind.LONG); break;
-            case FASTORE:            arrayStore(Kind.FLOAT); break;
-            case DASTORE:            arrayStore(Kind.DOUBLE); break;
-            case AASTORE:            arrayStore(Kind.REFERENCE); break;
-            case BASTORE:            arrayStore(Kind.BYTE); break;
-            case CASTORE:            arrayStore(Kind.CHAR); break;
-            case SASTORE:            arrayStore(Kind.SHORT); break;
-            case POP:                pop(); break;
-            case POP2:               if (!pop().isCategory2()) pop(); break;
-            case DUP:
-                push(machine.peek());
-                break;
-            case DUP_X1: {
-                Value s1 = pop();
-                Value s2 = pop();
-
-                push(s1);
-                push(s2);
-                push(s1);
-                break;
-            }
-
-            case DUP_X2: {
-                Value s1 = pop();
-                Value s2 = pop();
-
-                if (s2.isCategory2()) {
-                    push(s1);
-                    push(s2);
-                    push(s1);
-                } else {
-                    Value s3 = pop();
-
-                    push(s1);
-                    push(s3);
-                    push(s2);
-                    push(s1);
-                }
-                break;
-            }
-
-            case DUP2: {
-                Value s1 = pop();
-
-                if (s1.isCategory2()) {
-                    push(s1);
-                    push(s1);
-                } else {
-                    Value s2 = pop();
-
-                    push(s2);
-                    push(s1);
-                    push(s2);
-                    push(s1);
-                }
-                break;
-            }
-
-            case DUP2_X1: {
-                Value s1 = pop();
-
-                if (s1.isCategory2()) {
-                    Value s2 = pop();
+            case ASTORE_3:           frame().storeSlot(opcode - ASTORE_0); break;
+            case IASTORE:            intArrayStore(Kind.INT); break;
+            case LASTORE:            longArrayStore(); break;
+            case FASTORE:            floatArrayStore(); break;
+            case DASTORE:            doubleArrayStore(); break;
+            case AASTORE:            referenceArrayStore(); break;
+            case BASTORE:            intArrayStore(Kind.BYTE); break;
+            case CASTORE:            intArrayStore(Kind.CHAR); break;
+            case SASTORE:            intArrayStore(Kind.SHORT); break;
+            case POP:                frame().discard(1); break;
+            case POP2:               frame().discard(2); break;
+            case DUP:                frame().dup(); break;
+            case DUP_X1:             frame().dupX1(); break;
+            case DUP_X2:             frame().dupX2(); break;
+            case DUP2:               frame().dup2(); break;
+            case DUP2_X1:            frame().dup2X1(); break;
+            case DUP2_X2:            frame().dup2X2(); break;
+            case SWAP:               frame().swap(); break;
+
+            case IADD:               pushInt(popInt() + popInt()); break;
+            case LADD:               pushLong(popLong() + popLong()); break;
+            case FADD:               pushFloat(popFloat() + popFloat()); break;
+            case DADD:               pushDouble(popDouble() + popDouble()); break;
+
+            case ISUB:               pushInt(-popInt() + popInt()); break;
+            case LSUB:               pushLong(-popLong() + popLong()); break;
+            case FSUB:               pushFloat(-popFloat() + popFloat()); break;
+            case DSUB:               pushDouble(-popDouble() + popDouble()); break;
+
+            case IMUL:               pushInt(popInt() * popInt()); break;
+            case LMUL:               pushLong(popLong() * popLong()); break;
+            case FMUL:               pushFloat(popFloat() * popFloat()); break;
+            case DMUL:               pushDouble(popDouble() * popDouble()); break;
+
+            case IDIV:             { int v2 = popIntDivisor(); pushInt(popInt() / v2); break; }
+            case LDIV:             { long v2 = popLongDivisor(); pushLong(popLong() / v2); break; }
+            case FDIV:             { float v2 = popFloatDivisor(); pushFloat(popFloat() / v2); break; }
+            case DDIV:             { double v2 = popDoubleDivisor(); pushDouble(popDouble() / v2); break; }
+
+            case IREM:             { int v2 = popIntDivisor(); pushInt(popInt() % v2); break; }
+            case LREM:             { long v2 = popLongDivisor(); pushLong(popLong() % v2); break; }
+            case FREM:             { float v2 = popFloatDivisor(); pushFloat(popFloat() % v2); break; }
+            case DREM:             { double v2 = popDoubleDivisor(); pushDouble(popDouble() % v2); break; }
+
+            case INEG:               pushInt(0 - popInt()); break;
+            case LNEG:               pushLong(0 - popLong()); break;
+            case FNEG:               pushFloat((float) 0.0 - popFloat()); break;
+            case DNEG:               pushDouble(0.0 - popDouble()); break;
+
+            case ISHL:             { int amount = popInt(); int value =  popInt();  pushInt(value << (amount & 0x1F)); break; }
+            case LSHL:             { int amount = popInt(); long value = popLong(); pushLong(value << (amount & 0x3F)); break; }
+            case ISHR:             { int amount = popInt(); int value =  popInt();  pushInt(value >> (amount & 0x1F)); break; }
+            case LSHR:             { int amount = popInt(); long value = popLong(); pushLong(value >> (amount & 0x3F)); break; }
+            case IUSHR:            { int amount = popInt(); int value  = popInt();  pushInt(value >>> (amount & 0x1F)); break; }
+            case LUSHR:            { int amount = popInt(); long value = popLong(); pushLong(value >>> (amount & 0x3F)); break; }
+
+            case IAND:               pushInt(popInt() & popInt()); break;
+            case LAND:               pushLong(popLong() & popLong()); break;
+            case IOR:                pushInt(popInt() | popInt()); break;
+            case LOR:                pushLong(popLong() | popLong()); break;
+            case IXOR:               pushInt(popInt() ^ popInt()); break;
+            case LXOR:               pushLong(popLong() ^ popLong()); break;
+
+            case IINC:                increment(); break;
+
+            case I2L:                 pushLong(popInt()); break;
+            case I2F:                 pushFloat(popInt()); break;
+            case I2D:                 pushDouble(popInt()); break;
+            case L2I:                 pushInt((int) popLong()); break;
+            case L2F:                 pushFloat(popLong()); break;
+            case L2D:                 pushDouble(popLong()); break;
+            case F2I:                 pushInt((int) popFloat()); break;
+            case F2L:                 pushLong((long) popFloat()); break;
+            case F2D:                 pushDouble(popFloat()); break;
+            case D2I:                 pushInt((int) popDouble()); break;
+            case D2L:                 pushLong((long) popDouble()); break;
+            case D2F:                 pushFloat((float) popDouble()); break;
+            case I2B:                 pushInt((byte) popInt()); break;
+            case I2C:                 pushInt((char) popInt()); break;
+            case I2S:                 pushInt((short) popInt()); break;
+
+            case LCMP:                longCompare(); break;
+            case FCMPL:
+            case FCMPG:               floatCompare(); break;
+            case DCMPL:
+            case DCMPG:               doubleCompare(); break;
+
+            case IFEQ:               jumpIf(popInt() == 0, operand()); break;
+            case IFNE:               jumpIf(popInt() != 0, operand()); break;
+            case IFLT:               jumpIf(popInt() < 0, operand()); break;
+            case IFGE:               jumpIf(popInt() >= 0, operand()); break;
+            case IFGT:               jumpIf(popInt() > 0, operand()); break;
+            case IFLE:               jumpIf(popInt() <= 0, operand()); break;
+            case IF_ICMPEQ:        { int s1 = popInt(); jumpIf(popInt() == s1, operand()); break; }
+            case IF_ICMPNE:        { int s1 = popInt(); jumpIf(popInt() != s1, operand()); break; }
+            case IF_ICMPLT:        { int s1 = popInt(); jumpIf(popInt() < s1, operand()); break; }
+            case IF_ICMPGE:        { int s1 = popInt(); jumpIf(popInt() >= s1, operand()); break; }
+            case IF_ICMPGT:        { int s1 = popInt(); jumpIf(popInt() > s1, operand()); break; }
+            case IF_ICMPLE:        { int s1 = popInt(); jumpIf(popInt() <= s1, operand()); break; }
+            case IF_ACMPEQ:        { Value s1 = popReference(); jumpIf(popReference().equals(s1), operand()); break; }
+            case IF_ACMPNE:        { Value s1 = popReference(); jumpIf(!popReference().equals(s1), operand()); break; }
+            case IFNULL:             jumpIf(popReference().isZero(), operand()); break;
+            case IFNONNULL:          jumpIf(!popReference().isZero(), operand()); break;
+            case GOTO:
+            case GOTO_W:             jump(operand()); break;
+            case JSR:
+            case JSR_W:              pushInt(operand2()); jump(operand()); break;
+            case RET:                ret(); break;
+            case TABLESWITCH:
+            case LOOKUPSWITCH:       switchJump(); break;
+
+            case IRETURN:            return intReturn();
+            case LRETURN:            return longReturn();
+            case FRETURN:            return floatReturn();
+            case DRETURN:            return doubleReturn();
+            case ARETURN:            return referenceReturn();
+            case RETURN:             return voidReturn();
+
+            case GETSTATIC:          getStatic(); break;
+            case PUTSTATIC:          putStatic(); break;
+            case GETFIELD:           getField(); break;
+            case PUTFIELD:           putField(); break;
+
+            case INVOKEVIRTUAL:      invokeVirtual(); break;
+            case INVOKESPECIAL:      invokeSpecial(); break;
+            case INVOKESTATIC:       invokeStatic(); break;
+            case INVOKEINTERFACE:    invokeInterface(); break;
+
+            case NEW:                newInstance(); break;
+            case NEWARRAY:           newArray(); break;
+            case ANEWARRAY:          newReferenceArray(); break;
+            case MULTIANEWARRAY:     newMultiArray(); break;
+            case ARRAYLENGTH:        arrayLength(); break;
+            case ATHROW:             throwException(); break;
+            case CHECKCAST:          checkCast(); break;
+            case INSTANCEOF:         instanceOf(); break;
+            case MONITORENTER:       monitorEnter(); break;
+            case MONITOREXIT:        monitorExit(); break;
+
+            case Superinstructions.LOAD_GETFIELD:     loadGetField(); break;
+            case Superinstructions.LOAD_ARRAYLENGTH:  loadArrayLength(); break;
+            case Superinstructions.LOAD_LOAD_IF_ICMP: loadLoadCompare(); break;
+            case Superinstructions.CONSTANT_IADD:     constantAdd(); break;
+
+            default:                 unsupported(opcode);
+            // Checkstyle: resume
+        }
+        return MethodStatus.METHOD_CONTINUE;
+    }
 
-                    push(s1);
-                    push(s2);
-                    push(s1);
-                } else {
-                    Value s2 = pop();
-                    Value s3 = pop();
-
-                    push(s2);
-                    push(s1);
-                    push(s3);
-                    push(s2);
-                    push(s1);
-                }
-                break;
-            }
+    void longCompare() {
+        long right  = popLong();
+        long left   = popLong();
+        pushInt((left < right) ? -1 : (left == right) ? 0 : 1);
+    }
 
-            case DUP2_X2: {
-                Value s1 = pop();
+    void floatCompare() {
+        float right  = popFloat();
+        float left   = popFloat();
+        pushInt((left < right) ? -1 : (left == right) ? 0 : 1);
+    }
 
-                if (s1.isCategory2()) {
-                    Value s2 = pop();
+    void doubleCompare() {
+        double right  = popDouble();
+        double left   = popDouble();
+        pushInt((left < right) ? -1 : (left == right) ? 0 : 1);
+    }
 
-                    if (s2.isCategory2()) {
-                        push(s1);
-                        push(s2);
-                        push(s1);
-                    } else {
-                        Value s3 = pop();
+    void increment() {
+        final ExecutionFrame frame = frame();
+        final int index = operand();
+        frame.setIntLocal(index, frame.getIntLocal(index) + operand2());
+    }
 
-                        push(s1);
-                        push(s3);
-                        push(s2);
-                        push(s1);
-                    }
-                } else {
-                    Value s2 = pop();
-                    Value s3 = pop();
-
-                    if (s3.isCategory2()) {
-                        push(s2);
-                        push(s1);
-                        push(s3);
-                        push(s2);
-                        push(s1);
-                    } else {
-                        Value s4 = pop();
-
-                        push(s2);
-                        push(s1);
-                        push(s4);
-                        push(s3);
-                        push(s2);
-                        push(s1);
-                    }
-                }
-                break;
-            }
+    void loadConstant() {
+        push(machine.resolveConstantReference(operand()));
+    }
 
-            case SWAP: {
-                Value s1 = pop();
-                Value s2 = pop();
+    void ret() {
+        frame().setBytecodePosition(frame().getIntLocal(operand()));
+    }
 
-                push(s1);
-                push(s2);
-                break;
-            }
+    void switchJump() {
+        jump(machine.switchTable().targetFor(popInt()));
+    }
 
-            case IADD:               push(IntValue.from(pop().asInt() + pop().asInt())); break;
-            case LADD:               push(LongValue.from(pop().asLong() + pop().asLong())); break;
-            case FADD:               push(FloatValue.from(pop().asFloat() + pop().asFloat())); break;
-            case DADD:               push(DoubleValue.from(pop().asDouble() + pop().asDouble())); break;
-
-            case ISUB:               push(IntValue.from(-pop().asInt() + pop().asInt())); break;
-            case LSUB:               push(LongValue.from(-pop().asLong() + pop().asLong())); break;
-            case FSUB:               push(FloatValue.from(-pop().asFloat() + pop().asFloat())); break;
-            case DSUB:               push(DoubleValue.from(-pop().asDouble() + pop().asDouble())); break;
-
-            case IMUL:               push(IntValue.from(pop().asInt() * pop().asInt())); break;
-            case LMUL:               push(LongValue.from(pop().asLong() * pop().asLong())); break;
-            case FMUL:               push(FloatValue.from(pop().asFloat() * pop().asFloat())); break;
-            case DMUL:               push(DoubleValue.from(pop().asDouble() * pop().asDouble())); break;
-
-            case IDIV:             { int v2 = popCheckZero().asInt(); push(IntValue.from(pop().asInt() / v2)); break; }
-            case LDIV:             { long v2 = popCheckZero().asLong(); push(LongValue.from(pop().asLong() / v2)); break; }
-            case FDIV:             { float v2 = popCheckZero().asFloat(); push(FloatValue.from(pop().asFloat() / v2)); break; }
-            case DDIV:             { double v2 = popCheckZero().asDouble(); push(DoubleValue.from(pop().asDouble() / v2)); break; }
-
-            case IREM:             { int v2 = popCheckZero().asInt(); push(IntValue.from(pop().asInt() % v2)); break; }
-            case LREM:             { long v2 = popCheckZero().asLong(); push(LongValue.from(pop().asLong() % v2)); break; }
-            case FREM:             { float v2 = popCheckZero().asFloat(); push(FloatValue.from(pop().asFloat() % v2)); break; }
-            case DREM:             { double v2 = popCheckZero().asDouble(); push(DoubleValue.from(pop().asDouble() % v2)); break; }
-
-            case INEG:               push(IntValue.from(0 - pop().asInt())); break;
-            case LNEG:               push(LongValue.from(0 - pop().asLong())); break;
-            case FNEG:               push(FloatValue.from((float) 0.0 - pop().asFloat())); break;
-            case DNEG:               push(DoubleValue.from(0.0 - pop().asDouble())); break;
-
-            case ISHL:             { int amount = pop().asInt(); int value =  pop().asInt();  push(IntValue.from(value << (amount & 0x1F))); break; }
-            case LSHL:             { int amount = pop().asInt(); long value = pop().asLong(); push(LongValue.from(value << (amount & 0x3F))); break; }
-            case ISHR:             { int amount = pop().asInt(); int value =  pop().asInt();  push(IntValue.from(value >> (amount & 0x1F))); break; }
-            case LSHR:             { int amount = pop().asInt(); long value = pop().asLong(); push(LongValue.from(value >> (amount & 0x3F))); break; }
-            case IUSHR:            { int amount = pop().asInt(); int value  = pop().asInt();  push(IntValue.from(value >>> (amount & 0x1F))); break; }
-            case LUSHR:            { int amount = pop().asInt(); long value = pop().asLong(); push(LongValue.from(value >>> (amount & 0x3F))); break; }
-
-            case IAND:               push(IntValue.from(pop().asInt() & pop().asInt())); break;
-            case LAND:               push(LongValue.from(pop().asLong() & pop().asLong())); break;
-            case IOR:                push(IntValue.from(pop().asInt() | pop().asInt())); break;
-            case LOR:                push(LongValue.from(pop().asLong() | pop().asLong())); break;
-            case IXOR:               push(IntValue.from(pop().asInt() ^ pop().asInt())); break;
-            case LXOR:               push(LongValue.from(pop().asLong() ^ pop().asLong())); break;
-
-            case IINC: {
-                int index     = isWide ? readU2() : readU1();
-                int increment = isWide ? readS2() : readS1();
-                int value     = local(index).asInt();
-                setLocal(index, IntValue.from(value + increment));
-                break;
-            }
+    MethodStatus intReturn() {
+        int result = popInt();
+        if (machine.popFrame() == null) {
+            returnValue = IntValue.from(result);
+            return MethodStatus.METHOD_END;
+        }
+        pushInt(result);
+        return MethodStatus.METHOD_CONTINUE;
+    }
 
-            case I2L:                 push(LongValue.from(pop().asInt())); break;
-            case I2F:                 push(FloatValue.from(pop().asInt())); break;
-            case I2D:                 push(DoubleValue.from(pop().asInt())); break;
-            case L2I:                 push(IntValue.from((int) pop().asLong())); break;
-            case L2F:                 push(FloatValue.from(pop().asLong())); break;
-            case L2D:                 push(DoubleValue.from(pop().asLong())); break;
-            case F2I:                 push(IntValue.from((int) pop().asFloat())); break;
-            case F2L:                 push(LongValue.from((long) pop().asFloat())); break;
-            case F2D:                 push(DoubleValue.from(pop().asFloat())); break;
-            case D2I:                 push(IntValue.from((int) pop().asDouble())); break;
-            case D2L:                 push(LongValue.from((long) pop().asDouble())); break;
-            case D2F:                 push(FloatValue.from((float) pop().asDouble())); break;
-            case I2B:                 push(IntValue.from(pop().toByte())); break;
-            case I2C:                 push(IntValue.from(pop().toChar())); break;
-            case I2S:                 push(IntValue.from(pop().toShort())); break;
-
-            case LCMP: {
-                long right  = pop().asLong();
-                long left   = pop().asLong();
-                int  result = (left < right) ? -1 : (left == right) ? 0 : 1;
-
-                push(IntValue.from(result));
-                break;
-            }
+    MethodStatus longReturn() {
+        long result = popLong();
+        if (machine.popFrame() == null) {
+            returnValue = LongValue.from(result);
+            return MethodStatus.METHOD_END;
+        }
+        pushLong(result);
+        return MethodStatus.METHOD_CONTINUE;
+    }
 
-            case FCMPL:
-            case FCMPG: {
-                float right  = pop().asFloat();
-                float left   = pop().asFloat();
-                int   result = (left < right) ? -1 : (left == right) ? 0 : 1;
+    MethodStatus floatReturn() {
+        float result = popFloat();
+        if (machine.popFrame() == null) {
+            returnValue = FloatValue.from(result);
+            return MethodStatus.METHOD_END;
+        }
+        pushFloat(result);
+        return MethodStatus.METHOD_CONTINUE;
+    }
 
-                push(IntValue.from(result));
-                break;
-            }
+    MethodStatus doubleReturn() {
+        double result = popDouble();
+        if (machine.popFrame() == null) {
+            returnValue = DoubleValue.from(result);
+            return MethodStatus.METHOD_END;
+        }
+        pushDouble(result);
+        return MethodStatus.METHOD_CONTINUE;
+    }
 
-            case DCMPL:
-            case DCMPG: {
-                double right  = pop().asDouble();
-                double left   = pop().asDouble();
-                int    result = (left < right) ? -1 : (left == right) ? 0 : 1;
+    MethodStatus referenceReturn() {
+        Value result = popReference();
+        ExecutionFrame frame = machine.popFrame();
 
-                push(IntValue.from(result));
-                break;
-            }
+        //if this was the topmost frame on the stack
+        if (frame == null) {
+            returnValue = result;
+            return MethodStatus.METHOD_END;
+        }
 
-            case IFEQ: {
-                final short offset = readS2();
-                final int s1 = machine.pop().asInt();
-                if (s1 == 0) {
-                    machine.jump(offset);
-                }
-                break;
-            }
+        pushReference(result);
+        return MethodStatus.METHOD_CONTINUE;
+    }
 
-            case IFNE: {
-                final short offset = readS2();
-                final int s1 = machine.pop().asInt();
-                if (s1 != 0) {
-                    machine.jump(offset);
-                }
-                break;
-            }
+    MethodStatus voidReturn() {
+        if (machine.popFrame() == null) {
+            returnValue = VoidValue.VOID;
+            return MethodStatus.METHOD_END;
+        }
+        return MethodStatus.METHOD_CONTINUE;
+    }
 
-            case IFLT: {
-                final short offset = readS2();
-                final int s1 = machine.pop().asInt();
-                if (s1 < 0) {
-                    machine.jump(offset);
-                }
-                break;
-            }
+    void getStatic() {
+        machine.getStatic(operand());
+    }
 
-            case IFGE: {
-                final short offset = readS2();
-                final int s1 = machine.pop().asInt();
-                if (s1 >= 0) {
-                    machine.jump(offset);
-                }
-                break;
-            }
+    void putStatic() {
+        ConstantPoolCache.ResolvedField field = machine.resolveField(operand());
+        machine.putStatic(field.fieldActor, machine.pop(field.kind));
+    }
 
-            case IFGT: {
-                final short offset = readS2();
-                final int s1 = machine.pop().asInt();
-                if (s1 > 0) {
-                    machine.jump(offset);
-                }
-                break;
-            }
+    void getField() throws TeleInterpreterException {
+        machine.getField(popReference().asReference(), operand());
+    }
 
-            case IFLE: {
-                final short offset = readS2();
-                final int s1 = machine.pop().asInt();
-                if (s1 <= 0) {
-                    machine.jump(offset);
-                }
-                break;
-            }
+    void putField() {
+        ConstantPoolCache.ResolvedField field = machine.resolveField(operand());
+        Value value = machine.pop(field.kind);
+        Object instance = popReference().asBoxedJavaValue();
+        machine.putField(instance, field.fieldActor, value);
+    }
 
-            case IF_ICMPEQ: {
-                final short offset = readS2();
-                final int s1 = machine.pop().asInt();
-                final int s2 = machine.pop().asInt();
-                if (s2 == s1) {
-                    machine.jump(offset);
-                }
-                break;
+    void invokeVirtual() throws TeleInterpreterException {
+        final InlineCache inlineCache = machine.inlineCache();
+        ClassMethodActor methodActor = (ClassMethodActor) inlineCache.method(machine, operand());
+        Value value = machine.peekReference(inlineCache.receiverDepth());
+        if (value instanceof ReferenceValue) {
+            ReferenceValue receiver = (ReferenceValue) value;
+            if (receiver.isZero()) {
+                machine.raiseException(new NullPointerException());
             }
 
-            case IF_ICMPNE: {
-                final short offset = readS2();
-                final int s1 = machine.pop().asInt();
-                final int s2 = machine.pop().asInt();
-                if (s2 != s1) {
-                    machine.jump(offset);
-                }
-                break;
-            }
+            ClassActor dynamicClass = receiver.getClassActor();
+            assert dynamicClass != null;
 
-            case IF_ICMPLT: {
-                final short offset = readS2();
-                final int s1 = machine.pop().asInt();
-                final int s2 = machine.pop().asInt();
-                if (s2 < s1) {
-                    machine.jump(offset);
+            final ClassMethodActor cachedMethodActor = inlineCache.lookup(dynamicClass);
+            if (cachedMethodActor == null) {
+                methodActor = selectVirtualMethod(dynamicClass, methodActor);
+                if (!inlineCache.isMegamorphic()) {
+                    inlineCache.record(dynamicClass, methodActor);
                 }
-                break;
+            } else {
+                methodActor = cachedMethodActor;
             }
+        } else if (methodActor.isAbstract()) {
+            machine.raiseException(new AbstractMethodError());
+        }
 
-            case IF_ICMPGE: {
-                final short offset = readS2();
-                final int s1 = machine.pop().asInt();
-                final int s2 = machine.pop().asInt();
-                if (s2 >= s1) {
-                    machine.jump(offset);
-                }
-                break;
-            }
+        machine.invokeMethod(methodActor);
+    }
 
-            case IF_ICMPGT: {
-                final short offset = readS2();
-                final int s1 = machine.pop().asInt();
-                final int s2 = machine.pop().asInt();
-                if (s2 > s1) {
-                    machine.jump(offset);
-                }
-                break;
-            }
+    void invokeSpecial() throws TeleInterpreterException {
+        int cpIndex = operand();
+        ClassMethodActor methodActor = (ClassMethodActor) machine.resolveMethod(cpIndex);
+        Value receiver = machine.peekReference(ArgumentLayout.of(methodActor).slots - 1);
 
-            case IF_ICMPLE: {
-                final short offset = readS2();
-                final int s1 = machine.pop().asInt();
-                final int s2 = machine.pop().asInt();
-                if (s2 <= s1) {
-                    machine.jump(offset);
-                }
-                break;
-            }
+        if (receiver.isZero() && receiver instanceof ReferenceValue) {
+            machine.raiseException(new NullPointerException());
+        }
 
-            case IF_ACMPEQ: {
-                final short offset = readS2();
-                final ReferenceValue s1 = (ReferenceValue) machine.pop();
-                final ReferenceValue s2 = (ReferenceValue) machine.pop();
-                if (s2.equals(s1)) {
-                    machine.jump(offset);
-                }
-                break;
-            }
+        machine.invokeMethod(methodActor);
+    }
 
-            case IF_ACMPNE: {
-                final short offset = readS2();
-                final ReferenceValue s1 = (ReferenceValue) machine.pop();
-                final ReferenceValue s2 = (ReferenceValue) machine.pop();
+    void invokeStatic() throws TeleInterpreterException {
+        int cpIndex = operand();
+        ClassMethodActor methodActor = (ClassMethodActor) machine.resolveMethod(cpIndex);
+        machine.invokeMethod(methodActor);
+    }
 
-                if (!s2.equals(s1)) {
-                    machine.jump(offset);
-                }
-                break;
-            }
+    void invokeInterface() throws TeleInterpreterException {
+        final InlineCache inlineCache = machine.inlineCache();
+        InterfaceMethodActor methodActor = (InterfaceMethodActor) inlineCache.method(machine, operand());
+        ReferenceValue receiver = (ReferenceValue) machine.peekReference(inlineCache.receiverDepth());
 
-            case GOTO: {
-                final short offset = readS2();
-                machine.jump(offset);
-                break;
-            }
+        if (receiver.isZero()) {
+            machine.raiseException(new NullPointerException());
+        }
 
-            case JSR: {
-                short offset = readS2();
-                int returnPosition = machine.currentThread().frame().currentBytePosition();
-                push(IntValue.from(returnPosition));
-                machine.jump(offset);
-                break;
-            }
-            case RET: {
-                int index = isWide ? readU2() : readU1();
-                int value = local(index).asInt();
+        ClassActor dynamicClass = receiver.getClassActor();
+        assert dynamicClass != null;
 
-                machine.currentThread().frame().setBytecodePosition(value);
-                break;
+        ClassMethodActor dynamicMethodActor = inlineCache.lookup(dynamicClass);
+        if (dynamicMethodActor == null) {
+            dynamicMethodActor = selectInterfaceMethod(dynamicClass, methodActor);
+            if (!inlineCache.isMegamorphic()) {
+                inlineCache.record(dynamicClass, dynamicMethodActor);
             }
+        }
 
-            case TABLESWITCH: {
-                int index   = pop().asInt();
-                machine.alignInstructionPosition();
-                int defawlt = machine.readInt();
-                int low     = machine.readInt();
-                int high    = machine.readInt();
-
-                if (index < low || index > high) {
-                    machine.jump(defawlt);
-                } else {
-                    int jumpTableIndex = index - low;
-                    machine.skipBytes(jumpTableIndex * 4);
-                    int offset = machine.readInt();
-                    machine.jump(offset);
-                }
-
-                break;
-            }
+        machine.invokeMethod(dynamicMethodActor);
+    }
 
-            case LOOKUPSWITCH: {
-                int key     = pop().asInt();
-                machine.alignInstructionPosition();
-                int defawlt = machine.readInt();
-                int nPairs  = machine.readInt();
-
-                boolean foundMatch = false;
-                for (int i = 0; i < nPairs; i++) {
-                    int value = machine.readInt();
-                    int offset = machine.readInt();
-                    if (value == key) {
-                        machine.jump(offset);
-                        foundMatch = true;
-                        break;
-                    }
-                }
+    void newInstance() throws InstantiationException {
+        int cpIndex = operand();
+        ClassActor classActor = machine.resolveClassReference(cpIndex);
+        machine.allocated(classActor.dynamicTupleSize().toInt());
+        pushReference(ReferenceValue.from(Objects.allocateInstance(classActor.toJava())));
+    }
 
-                if (!foundMatch) {
-                    machine.jump(defawlt);
-                }
-                break;
-            }
+    void newArray() throws TeleInterpreterException {
+        int arrayType = operand();
+        int arraySize  = peekInt(0);
 
-            case IRETURN:
-            case LRETURN:
-            case FRETURN:
-            case DRETURN:
-            case ARETURN: {
-                Value result = pop();
-                ExecutionFrame frame = machine.popFrame();
-
-                //if this was the topmost frame on the stack
-                if (frame == null) {
-                    returnValue = result;
-                    return MethodStatus.METHOD_END;
-                }
+        if (arraySize < 0) {
+            popInt();
+            machine.raiseException(new NegativeArraySizeException());
+        }
 
-                push(result);
-                break;
-            }
+        // The allocation is charged before it is made so that the budget stops a run before the host runs out of memory.
+        // The size is only popped once it has been charged so that a run stopped here resumes by executing this again.
+        // The element sizes of the array types 4 to 11 are 1, 2, 4 and 8 bytes, repeated
+        machine.allocated((long) arraySize << ((arrayType - 4) & 3));
+        popInt();
 
-            case RETURN: {
-                ExecutionFrame frame = machine.popFrame();
-                if (frame == null) {
-                    returnValue = VoidValue.VOID;
-                    return MethodStatus.METHOD_END;
-                }
+        switch (arrayType) {
+            case 4:
+                pushReference(ReferenceValue.from(new boolean[arraySize]));
                 break;
-            }
-
-            case GETSTATIC:  push(machine.getStatic(readU2())); break;
-            case PUTSTATIC:  machine.putStatic(readU2(), pop()); break;
-            case GETFIELD:   push(machine.getField(pop().asReference(), readU2())); break;
-            case PUTFIELD: {
-                Value value = pop();
-                Object instance = pop().asBoxedJavaValue();
-                machine.putField(instance, readU2(), value);
+            case 5:
+                pushReference(ReferenceValue.from(new char[arraySize]));
                 break;
-            }
-
-            case INVOKEVIRTUAL: {
-                int cpIndex = readU2();
-                ClassMethodActor resolveMethod = (ClassMethodActor) machine.resolveMethod(cpIndex);
-                ClassMethodActor methodActor = resolveMethod;
-                Value value = machine.peek(methodActor.descriptor().numberOfParameters() + 1);
-                if (value instanceof ReferenceValue) {
-                    ReferenceValue receiver = (ReferenceValue) value;
-                    if (receiver.isZero()) {
-                        machine.raiseException(new NullPointerException());
-                    }
-
-                    ClassActor dynamicClass = receiver.getClassActor();
-                    assert dynamicClass != null;
-
-                    methodActor = dynamicClass.findVirtualMethodActor(methodActor);
-                }
-
-                if (methodActor == null) {
-                    ReferenceValue receiver = (ReferenceValue) value;
-                    ClassActor dynamicClass = receiver.getClassActor();
-
-                    methodActor = dynamicClass.findVirtualMethodActor(methodActor);
-                    machine.raiseException(new AbstractMethodError());
-                } else if (methodActor.isAbstract()) {
-                    machine.raiseException(new AbstractMethodError());
-                }
-
-                machine.invokeMethod(methodActor);
+            case 6:
+                pushReference(ReferenceValue.from(new float[arraySize]));
                 break;
-            }
-
-            case INVOKESPECIAL: {
-                int cpIndex = readU2();
-                ClassMethodActor methodActor = (ClassMethodActor) machine.resolveMethod(cpIndex);
-                Value receiver = machine.peek(methodActor.descriptor().numberOfParameters() + 1);
-
-                if (receiver.isZero() && receiver instanceof ReferenceValue) {
-                    machine.raiseException(new NullPointerException());
-                }
-
-                machine.invokeMethod(methodActor);
+            case 7:
+                pushReference(ReferenceValue.from(new double[arraySize]));
                 break;
-            }
-
-            case INVOKESTATIC: {
-                int cpIndex = readU2();
-                ClassMethodActor methodActor = (ClassMethodActor) machine.resolveMethod(cpIndex);
-                machine.invokeMethod(methodActor);
+            case 8:
+                pushReference(ReferenceValue.from(new byte[arraySize]));
                 break;
-            }
-
-            case INVOKEINTERFACE: {
-                int cpIndex = readU2();
-                readU2();
-                InterfaceMethodActor methodActor = (InterfaceMethodActor) machine.resolveMethod(cpIndex);
-                ReferenceValue receiver = (ReferenceValue) machine.peek(methodActor.descriptor().numberOfParameters() + 1);
-
-                if (receiver.isZero()) {
-                    machine.raiseException(new NullPointerException());
-                }
-
-                ClassActor dynamicClass = receiver.getClassActor();
-                assert dynamicClass != null;
-
-                if (!dynamicClass.getAllInterfaceActors().contains((InterfaceActor) methodActor.holder())) {
-                    machine.raiseException(new IncompatibleClassChangeError(dynamicClass + " does not implement " + methodActor.holder()));
-                }
-
-                VirtualMethodActor dynamicMethodActor = dynamicClass.findVirtualMethodActor(methodActor);
-
-                if (dynamicMethodActor == null) {
-                    machine.raiseException(new AbstractMethodError("No such method " + methodActor + " found in " + dynamicClass));
-                } else if (dynamicMethodActor.isAbstract()) {
-                    machine.raiseException(new AbstractMethodError("Method " + dynamicMethodActor + " is abstract in " + dynamicClass));
-                } else if (!dynamicMethodActor.isPublic()) {
-                    machine.raiseException(new IllegalAccessError("Method " + dynamicMethodActor + " is not public in " + dynamicClass));
-                }
-
-                machine.invokeMethod(dynamicMethodActor);
+            case 9:
+                pushReference(ReferenceValue.from(new short[arraySize]));
                 break;
-            }
-
-            case NEW: {
-                int cpIndex = readU2();
-                ClassActor classActor = machine.resolveClassReference(cpIndex);
-                push(ReferenceValue.from(Objects.allocateInstance(classActor.toJava())));
+            case 10:
+                pushReference(ReferenceValue.from(new int[arraySize]));
                 break;
-            }
-            case NEWARRAY: {
-                int arrayType = readU1();
-                int arraySize  = pop().asInt();
-
-                if (arraySize < 0) {
-                    machine.raiseException(new NegativeArraySizeException());
-                }
-
-                switch (arrayType) {
-                    case 4:
-                        push(ReferenceValue.from(new boolean[arraySize]));
-                        break;
-                    case 5:
-                        push(ReferenceValue.from(new char[arraySize]));
-                        break;
-                    case 6:
-                        push(ReferenceValue.from(new float[arraySize]));
-                        break;
-                    case 7:
-                        push(ReferenceValue.from(new double[arraySize]));
-                        break;
-                    case 8:
-                        push(ReferenceValue.from(new byte[arraySize]));
-                        break;
-                    case 9:
-                        push(ReferenceValue.from(new short[arraySize]));
-                        break;
-                    case 10:
-                        push(ReferenceValue.from(new int[arraySize]));
-                        break;
-                    case 11:
-                        push(ReferenceValue.from(new long[arraySize]));
-                        break;
-                }
-
+            case 11:
+                pushReference(ReferenceValue.from(new long[arraySize]));
                 break;
-            }
+        }
+    }
 
-            case ANEWARRAY: {
-                int cpIndex = readU2();
-                int arraySize = pop().asInt();
+    void newReferenceArray() throws TeleInterpreterException {
+        int cpIndex = operand();
+        int arraySize = peekInt(0);
 
-                ClassActor classActor = machine.resolveClassReference(cpIndex);
+        ClassActor classActor = machine.resolveClassReference(cpIndex);
 
-                if (arraySize < 0) {
-                    machine.raiseException(new NegativeArraySizeException());
-                }
+        if (arraySize < 0) {
+            popInt();
+            machine.raiseException(new NegativeArraySizeException());
+        }
 
-                push(ReferenceValue.from(Array.newInstance(classActor.toJava(), arraySize)));
-                break;
-            }
+        machine.allocated((long) arraySize * Word.size());
+        popInt();
+        pushReference(ReferenceValue.from(Array.newInstance(classActor.toJava(), arraySize)));
+    }
 
-            case ARRAYLENGTH: {
-                Reference array = pop().asReference();
+    void newMultiArray() throws TeleInterpreterException {
+        int cpIndex = operand();
+        ClassActor arrayClassActor = machine.resolveClassReference(cpIndex);
+        int lengthsCount = operand2();
+        if (lengthsCount < 1) {
+            throw new ClassFormatError("dimensions operand of multianewarray is less than 1");
+        }
+        int[] lengths = new int[lengthsCount];
 
-                if (array.isZero()) {
-                    machine.raiseException(new NullPointerException());
-                }
+        if (lengthsCount > arrayClassActor.numberOfDimensions()) {
+            throw new IncompatibleClassChangeError(lengthsCount + " is too many dimensions for " + arrayClassActor);
+        }
 
-                push(IntValue.from(Layout.readArrayLength(array)));
-                break;
+        for (int i = lengthsCount - 1; i >= 0; --i) {
+            lengths[i] = peekInt(lengthsCount - 1 - i);
+        }
+        for (int i = lengthsCount - 1; i >= 0; --i) {
+            if (lengths[i] < 0) {
+                frame().discard(lengthsCount);
+                machine.raiseException(new NegativeArraySizeException());
             }
+        }
 
-            case ATHROW: {
-                ReferenceValue t = (ReferenceValue) pop();
-                if (t.isZero()) {
-                    throw new NullPointerException();
-                } else {
-                    throw machine.raiseException(t);
-                }
-            }
+        // Estimate the total number of elements, saturating rather than overflowing
+        final long maxElements = Long.MAX_VALUE / Word.size();
+        long elements = 0;
+        long count = 1;
+        for (int length : lengths) {
+            count = length == 0 || count <= maxElements / length ? count * length : maxElements;
+            elements = Math.min(maxElements, elements + count);
+        }
+        machine.allocated(elements * Word.size());
+        frame().discard(lengthsCount);
+        pushReference(ReferenceValue.from(createMultiDimensionArray(arrayClassActor, 0, lengths)));
+    }
 
-            case CHECKCAST: {
-                int cpIndex = readU2();
-                ClassActor classActor = machine.resolveClassReference(cpIndex);
-                ReferenceValue object = (ReferenceValue) pop();
+    void arrayLength() throws TeleInterpreterException {
+        Reference array = popReference().asReference();
 
-                if (!object.isZero()) {
-                    if (!classActor.isAssignableFrom(object.getClassActor())) {
-                        String message = object.getClassActor().toJava() + " is not a subclass of " + classActor;
-                        machine.raiseException(new ClassCastException(message));
-                    }
-                }
+        if (array.isZero()) {
+            machine.raiseException(new NullPointerException());
+        }
 
-                push(object);
-                break;
-            }
+        pushInt(machine.arrayLength(array));
+    }
 
-            case INSTANCEOF: {
-                int cpIndex = readU2();
-                ClassActor classActor = machine.resolveClassReference(cpIndex);
-                ReferenceValue object = (ReferenceValue) pop();
+    void throwException() throws TeleInterpreterException {
+        ReferenceValue t = (ReferenceValue) popReference();
+        if (t.isZero()) {
+            throw new NullPointerException();
+        } else {
+            throw machine.raiseException(t);
+        }
+    }
 
-                if (object.isZero() || !classActor.isAssignableFrom(object.getClassActor())) {
-                    push(IntValue.from(0));
-                } else {
-                    push(IntValue.from(1));
-                }
+    void checkCast() throws TeleInterpreterException {
+        int cpIndex = operand();
+        ClassActor classActor = machine.resolveClassReference(cpIndex);
+        ReferenceValue object = (ReferenceValue) popReference();
 
-                break;
+        if (!object.isZero()) {
+            if (!classActor.isAssignableFrom(object.getClassActor())) {
+                String message = object.getClassActor().toJava() + " is not a subclass of " + classActor;
+                machine.raiseException(new ClassCastException(message));
             }
+        }
 
-            case MONITORENTER:
-            case MONITOREXIT:
-                pop();
-                break;
+        pushReference(object);
+    }
 
-            case MULTIANEWARRAY: {
-                int cpIndex = readU2();
-                ClassActor arrayClassActor = machine.resolveClassReference(cpIndex);
-                int lengthsCount = (short) (readS1() & 0x7F);
-                if (lengthsCount < 1) {
-                    throw new ClassFormatError("dimensions operand of multianewarray is less than 1");
-                }
-                int[] lengths = new int[lengthsCount];
+    void instanceOf() {
+        int cpIndex = operand();
+        ClassActor classActor = machine.resolveClassReference(cpIndex);
+        ReferenceValue object = (ReferenceValue) popReference();
 
-                if (lengthsCount > arrayClassActor.numberOfDimensions()) {
-                    throw new IncompatibleClassChangeError(lengthsCount + " is too many dimensions for " + arrayClassActor);
-                }
+        if (object.isZero() || !classActor.isAssignableFrom(object.getClassActor())) {
+            pushInt(0);
+        } else {
+            pushInt(1);
+        }
+    }
 
-                for (int i = lengthsCount - 1; i >= 0; --i) {
-                    lengths[i] = pop().asInt();
-                    if (lengths[i] < 0) {
-                        machine.raiseException(new NegativeArraySizeException());
-                    }
-                }
+    void monitorEnter() throws TeleInterpreterException {
+        Reference object = machine.peekReference(0).asReference();
 
-                push(ReferenceValue.from(createMultiDimensionArray(arrayClassActor, 0, lengths)));
-                break;
-            }
+        if (object.isZero()) {
+            machine.raiseException(new NullPointerException());
+        }
 
-            case IFNULL: {
-                final int offset = machine.readShort();
-                final Value r = machine.pop();
+        if (machine.monitorEnter(object)) {
+            popReference();
+        } else {
+            // Retry the instruction once the thread is rescheduled
+            frame().rewind();
+        }
+    }
 
-                if (r.isZero()) {
-                    machine.jump(offset);
-                }
+    void monitorExit() throws TeleInterpreterException {
+        Reference object = popReference().asReference();
 
-                break;
-            }
+        if (object.isZero()) {
+            machine.raiseException(new NullPointerException());
+        }
 
-            case IFNONNULL: {
-                final int offset = machine.readShort();
-                final Value r = machine.pop();
+        machine.monitorExit(object);
+    }
 
-                if (!r.isZero()) {
-                    machine.jump(offset);
-                }
+    void loadGetField() throws TeleInterpreterException {
+        final ExecutionFrame frame = frame();
+        frame.enterFused(2);
+        machine.getField(frame.getReferenceLocal(frame.fusedOperand(1)).asReference(), operand());
+    }
 
-                break;
-            }
+    void loadArrayLength() throws TeleInterpreterException {
+        final ExecutionFrame frame = frame();
+        frame.enterFused(2);
+        Reference array = frame.getReferenceLocal(frame.fusedOperand(1)).asReference();
 
-            case GOTO_W:
-                machine.jump(machine.readInt());
-                break;
+        if (array.isZero()) {
+            machine.raiseException(new NullPointerException());
+        }
 
-            case JSR_W:
-                int offset = machine.readInt();
-                int returnPosition = machine.currentThread().frame().currentBytePosition();
-                push(IntValue.from(returnPosition));
-                machine.jump(offset);
-                break;
+        pushInt(machine.arrayLength(array));
+    }
 
-            default:                     machine.raiseException(new ClassFormatError("Unsupported bytecode: " + opcode + " [" + Bytecodes.nameOf(opcode) + "]"));
+    void loadLoadCompare() {
+        final ExecutionFrame frame = frame();
+        frame.enterFused(3);
+        final int left = frame.getIntLocal(frame.fusedOperand(2));
+        final int right = frame.getIntLocal(frame.fusedOperand(1));
+        final boolean condition;
+        switch (frame.currentOpcode()) {
+            // Checkstyle: stop
+            case IF_ICMPEQ: condition = left == right; break;
+            case IF_ICMPNE: condition = left != right; break;
+            case IF_ICMPLT: condition = left < right; break;
+            case IF_ICMPGE: condition = left >= right; break;
+            case IF_ICMPGT: condition = left > right; break;
+            case IF_ICMPLE: condition = left <= right; break;
+            default:        throw ProgramError.unexpected("Invalid comparison in superinstruction: " + Bytecodes.nameOf(frame.currentOpcode()));
             // Checkstyle: resume
         }
-        return MethodStatus.METHOD_CONTINUE;
+        jumpIf(condition, operand());
+    }
+
+    void constantAdd() {
+        final ExecutionFrame frame = frame();
+        frame.enterFused(2);
+        pushInt(popInt() + frame.fusedOperand(1));
+    }
+
+    void unsupported(int opcode) throws TeleInterpreterException {
+        machine.raiseException(new ClassFormatError("Unsupported bytecode: " + opcode + " [" + Superinstructions.nameOf(opcode) + "]"));
     }
 
     public static enum MethodStatus {
@@ -20,52 +20,105 @@
  */
 package com.sun.max.tele.interpreter;
 
+import java.io.*;
 import java.lang.reflect.*;
 
+import com.sun.max.vm.actor.member.*;
 import com.sun.max.vm.value.*;
 
 /**
  * An exception thrown while executing the {@linkplain TeleInterpreter interpreter}.
  *
  * Instances of this exception type are constructed in the context of the interpreter's {@linkplain Machine machine}
- * state which is used to construct a stack trace of the interpreter's call stack at the time of the exception.
+ * state which is used to construct a stack trace of the interpreter's call stack at the time of the exception. Only the
+ * method and bytecode index of each frame are recorded when the exception is created. The stack trace elements are
+ * created the first time the stack trace is {@linkplain #getStackTrace() read} or {@linkplain #printStackTrace()
+ * printed}. The host VM's stack trace is never recorded as it says nothing about the interpreted code.
  *
  * @author Doug Simon
  */
 public class TeleInterpreterException extends InvocationTargetException {
 
-    private final ReferenceValue throwableReference;
+    private ReferenceValue throwableReference;
+
+    /**
+     * The methods on the interpreter's call stack, innermost first, or {@code null} once the stack trace has been
+     * created from them.
+     */
+    private ClassMethodActor[] methods;
+
+    /**
+     * The bytecode index of the current instruction in each of {@link #methods}.
+     */
+    private int[] bcis;
 
     public TeleInterpreterException(Throwable throwable, Machine machine) {
         super(throwable, throwable.getMessage());
-        throwableReference = ReferenceValue.from(throwable);
-        initStackTrace(machine);
+        snapshotStack(machine);
     }
 
     public ReferenceValue throwableReference() {
+        if (throwableReference == null) {
+            throwableReference = ReferenceValue.from(getCause());
+        }
         return throwableReference;
     }
 
     public Class throwableType() {
-        return throwableReference.getClassActor().toJava();
+        return getCause().getClass();
     }
 
-    private void initStackTrace(Machine machine) {
+    private void snapshotStack(Machine machine) {
         ExecutionFrame frame = machine.currentThread().frame();
-        if (frame == null) {
-            setStackTrace(new StackTraceElement[0]);
-        } else {
-            int i = 0;
-            final int depth = frame.depth();
-            final StackTraceElement[] stackTrace = new StackTraceElement[depth];
-            while (frame != null) {
-                stackTrace[i++] = frame.method().toStackTraceElement(frame.currentOpcodePosition());
-                frame = frame.callersFrame();
+        final int depth = frame == null ? 0 : frame.depth();
+        methods = new ClassMethodActor[depth];
+        bcis = new int[depth];
+        for (int i = 0; frame != null; i++) {
+            methods[i] = frame.method();
+            bcis[i] = frame.currentOpcodePosition();
+            frame = frame.callersFrame();
+        }
+    }
+
+    /**
+     * Creates the stack trace elements of this exception. This must be done before the exception becomes the cause of
+     * another, as {@link Throwable} prints the stack trace of a cause without calling {@link #getStackTrace()}.
+     */
+    synchronized void materializeStackTrace() {
+        if (methods != null) {
+            final StackTraceElement[] stackTrace = new StackTraceElement[methods.length];
+            for (int i = 0; i < methods.length; i++) {
+                stackTrace[i] = methods[i].toStackTraceElement(bcis[i]);
             }
+            methods = null;
+            bcis = null;
             setStackTrace(stackTrace);
         }
     }
 
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+    @Override
+    public StackTraceElement[] getStackTrace() {
+        materializeStackTrace();
+        return super.getStackTrace();
+    }
+
+    @Override
+    public void printStackTrace(PrintStream s) {
+        materializeStackTrace();
+        super.printStackTrace(s);
+    }
+
+    @Override
+    public void printStackTrace(PrintWriter s) {
+        materializeStackTrace();
+        super.printStackTrace(s);
+    }
+
     /**
      * Returns the value of calling {@link #toString()} on the {@link #getCause() wrapped} exception.
      */
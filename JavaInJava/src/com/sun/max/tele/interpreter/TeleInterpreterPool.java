@@ -0,0 +1,502 @@
+/*
+ * Copyright (c) 2009 Sun Microsystems, Inc.  All rights reserved.
+ *
+ * Sun Microsystems, Inc. has intellectual property rights relating to technology embodied in the product
+ * that is described in this document. In particular, and without limitation, these intellectual property
+ * rights may include one or more of the U.S. patents listed at http://www.sun.com/patents and one or
+ * more additional patents or pending patent applications in the U.S. and in other countries.
+ *
+ * U.S. Government Rights - Commercial software. Government users are subject to the Sun
+ * Microsystems, Inc. standard license agreement and applicable provisions of the FAR and its
+ * supplements.
+ *
+ * Use is subject to license terms. Sun, Sun Microsystems, the Sun logo, Java and Solaris are trademarks or
+ * registered trademarks of Sun Microsystems, Inc. in the U.S. and other countries. All SPARC trademarks
+ * are used under license and are trademarks or registered trademarks of SPARC International, Inc. in the
+ * U.S. and other countries.
+ *
+ * UNIX is a registered trademark in the U.S. and other countries, exclusively licensed through X/Open
+ * Company, Ltd.
+ */
+package com.sun.max.tele.interpreter;
+
+import java.lang.ref.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.sun.max.tele.*;
+import com.sun.max.tele.interpreter.TeleInterpreter.Dispatch;
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.value.*;
+
+/**
+ * A pool of interpreter {@linkplain Machine machines} for one VM that can be used by any number of threads to execute
+ * methods concurrently. Each execution runs on a machine of its own, taken from the pool if one is idle. The machine
+ * retains its thread, its cache of the remote VM's memory and its cache of static tuple references from one execution
+ * to the next. The decoded code, resolved constant pool entries and inline caches used by all machines are shared
+ * between all executions regardless of the pool they come from.
+ * <p>
+ * A {@linkplain InterpreterProfile profile} must not be used by more than one execution at a time.
+ * <p>
+ * The static {@code execute} methods of {@link TeleInterpreter} use a pool shared by all callers for each VM.
+ * <p>
+ * Executions can also be {@linkplain #submit(ClassMethodActor, Value...) submitted} to run asynchronously on a bounded
+ * set of daemon threads owned by the pool.
+ */
+public final class TeleInterpreterPool {
+
+    /**
+     * The default maximum number of idle machines retained by a pool.
+     */
+    public static final int DEFAULT_MAX_IDLE = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The number of threads running {@linkplain #submit(ClassMethodActor, Value...) submitted} executions. Setting this
+     * to 1 serializes the executions, and with them the requests made to the remote VM.
+     */
+    public static final int ASYNC_THREADS = Integer.getInteger("max.interpreter.asyncThreads", DEFAULT_MAX_IDLE);
+
+    private final TeleVM teleVM;
+    private final Dispatch dispatch;
+    private final BlockingQueue<Machine> idleMachines;
+
+    /**
+     * The submitted executions that have not completed, keyed by method and arguments.
+     */
+    private final ConcurrentMap<Submission, Execution> pendingSubmissions = new ConcurrentHashMap<Submission, Execution>();
+    private ExecutorService executor;
+
+    /**
+     * Creates a pool of machines for executing methods in a given VM.
+     *
+     * @param teleVM the remote VM or {@code null} to execute methods in the host VM
+     * @param maxIdle the maximum number of idle machines retained for reuse
+     */
+    public TeleInterpreterPool(TeleVM teleVM, Dispatch dispatch, int maxIdle) {
+        this.teleVM = teleVM;
+        this.dispatch = dispatch;
+        this.idleMachines = new ArrayBlockingQueue<Machine>(maxIdle);
+    }
+
+    public TeleInterpreterPool(TeleVM teleVM) {
+        this(teleVM, Dispatch.DEFAULT, DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * Executes a given method with the given arguments. This may be called by several threads at once.
+     *
+     * @see TeleInterpreter#execute(TeleVM, ClassMethodActor, Value...)
+     */
+    public Value execute(ClassMethodActor classMethodActor, Value... args) throws TeleInterpreterException {
+        return execute(null, classMethodActor, args);
+    }
+
+    /**
+     * Executes a given method with the given arguments, recording the execution in a given profile. This may be called
+     * by several threads at once provided that they use different profiles.
+     *
+     * @param profile the profile to update or {@code null} if execution is not to be profiled
+     * @see TeleInterpreter#execute(TeleVM, ClassMethodActor, Value...)
+     */
+    public Value execute(InterpreterProfile profile, ClassMethodActor classMethodActor, Value... args) throws TeleInterpreterException {
+        return execute(null, profile, classMethodActor, args);
+    }
+
+    /**
+     * Executes a given method with the given arguments within a given budget, recording the execution in a given
+     * profile. This may be called by several threads at once provided that they use different budgets and profiles.
+     * If the run is stopped by its budget, the machine it ran on is kept by the resulting exception so that the run
+     * can be resumed, and it is not returned to this pool.
+     *
+     * @param budget the budget for the run or {@code null} if it is not to be limited
+     * @param profile the profile to update or {@code null} if execution is not to be profiled
+     * @see TeleInterpreter#execute(TeleVM, ExecutionBudget, ClassMethodActor, Value...)
+     */
+    public Value execute(ExecutionBudget budget, InterpreterProfile profile, ClassMethodActor classMethodActor, Value... args) throws TeleInterpreterException {
+        return execute(dispatch, budget, profile, classMethodActor, args);
+    }
+
+    /**
+     * Executes a given method with the given arguments using a given dispatch mechanism.
+     *
+     * @see #execute(ExecutionBudget, InterpreterProfile, ClassMethodActor, Value...)
+     */
+    Value execute(Dispatch dispatch, ExecutionBudget budget, InterpreterProfile profile, ClassMethodActor classMethodActor, Value... args) throws TeleInterpreterException {
+        final Machine machine = acquire();
+        boolean isInterrupted = false;
+        try {
+            machine.setBudget(budget);
+            return new TeleInterpreter(teleVM, dispatch, profile).run(machine, classMethodActor, args);
+        } catch (ExecutionInterruptedException executionInterruptedException) {
+            isInterrupted = true;
+            throw executionInterruptedException;
+        } finally {
+            if (!isInterrupted) {
+                release(machine);
+            }
+        }
+    }
+
+    /**
+     * Executes a given method once for each of a list of argument tuples on the calling thread.
+     *
+     * @see #executeBatch(ClassMethodActor, List, int)
+     */
+    public List<Evaluation> executeBatch(ClassMethodActor classMethodActor, List<Value[]> argumentTuples) {
+        return executeBatch(classMethodActor, argumentTuples, 1);
+    }
+
+    /**
+     * Executes a given method once for each of a list of argument tuples, spreading the executions over a given number
+     * of threads. Each thread runs its share of the executions one after the other on a single machine so that the
+     * machine's cache of the remote VM's memory, which typically holds the objects common to all executions, is
+     * fetched only once per thread. The decoded code, resolved constant pool entries and inline caches of the method
+     * and its callees are shared by all executions.
+     *
+     * @param parallelism the number of threads executing the batch, including the calling thread
+     * @return an {@linkplain Evaluation#isDone() completed} evaluation for each argument tuple, in the order of
+     *         {@code argumentTuples}, holding either the value returned by the method or the exception it threw
+     */
+    public List<Evaluation> executeBatch(final ClassMethodActor classMethodActor, List<Value[]> argumentTuples, int parallelism) {
+        final List<Evaluation> evaluations = new ArrayList<Evaluation>(argumentTuples.size());
+        for (Value[] arguments : argumentTuples) {
+            evaluations.add(new Evaluation(classMethodActor, arguments));
+        }
+        final AtomicInteger nextIndex = new AtomicInteger();
+        final Runnable worker = new Runnable() {
+            public void run() {
+                final Machine machine = acquire();
+                try {
+                    for (int i = nextIndex.getAndIncrement(); i < evaluations.size(); i = nextIndex.getAndIncrement()) {
+                        final Evaluation evaluation = evaluations.get(i);
+                        try {
+                            evaluation.complete(new TeleInterpreter(teleVM, dispatch, null).run(machine, classMethodActor, evaluation.arguments));
+                        } catch (TeleInterpreterException teleInterpreterException) {
+                            evaluation.fail(teleInterpreterException);
+                        } finally {
+                            machine.reset();
+                        }
+                    }
+                } finally {
+                    release(machine);
+                }
+            }
+        };
+
+        final int helpers = Math.min(parallelism, evaluations.size()) - 1;
+        if (helpers <= 0) {
+            worker.run();
+            return evaluations;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(helpers);
+        try {
+            final List<Future<?>> futures = new ArrayList<Future<?>>(helpers);
+            for (int i = 0; i < helpers; i++) {
+                futures.add(executor.submit(worker));
+            }
+            worker.run();
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for batch evaluation", interruptedException);
+                } catch (ExecutionException executionException) {
+                    final Throwable cause = executionException.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw (RuntimeException) cause;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return evaluations;
+    }
+
+    /**
+     * A method and the arguments with which it is submitted for execution.
+     */
+    private static final class Submission {
+        final ClassMethodActor method;
+        final Value[] arguments;
+
+        Submission(ClassMethodActor method, Value[] arguments) {
+            this.method = method;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof Submission) {
+                final Submission submission = (Submission) other;
+                return method == submission.method && Arrays.equals(arguments, submission.arguments);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return method.hashCode() ^ Arrays.hashCode(arguments);
+        }
+    }
+
+    /**
+     * A submitted execution, shared by all callers that submitted the same method with equal arguments while it was
+     * pending. Each caller waits on a {@link Caller} future of its own, which is completed when the execution is.
+     */
+    private final class Execution extends FutureTask<Value> {
+        final Submission submission;
+        final ExecutionBudget budget;
+        private final List<Caller> callers = new ArrayList<Caller>();
+        private int activeCallers;
+        private boolean closed;
+        private Value result;
+        private Throwable exception;
+
+        Execution(Submission submission, ExecutionBudget budget, Callable<Value> callable) {
+            super(callable);
+            this.submission = submission;
+            this.budget = budget;
+        }
+
+        /**
+         * Adds a caller waiting for the result of this execution.
+         *
+         * @return the future of the new caller or {@code null} if this execution has completed or all its callers
+         *         have cancelled it
+         */
+        synchronized Caller join() {
+            if (closed) {
+                return null;
+            }
+            final Caller caller = new Caller(this);
+            callers.add(caller);
+            activeCallers++;
+            return caller;
+        }
+
+        /**
+         * Notifies this execution that one of its callers has cancelled its future. The execution itself is
+         * cancelled once no caller is waiting for it.
+         */
+        void leave() {
+            synchronized (this) {
+                if (--activeCallers > 0 || closed) {
+                    return;
+                }
+                closed = true;
+            }
+            cancel(true);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                budget.cancel();
+            }
+            return cancelled;
+        }
+
+        @Override
+        protected void set(Value value) {
+            result = value;
+            super.set(value);
+        }
+
+        @Override
+        protected void setException(Throwable throwable) {
+            exception = throwable;
+            super.setException(throwable);
+        }
+
+        @Override
+        protected void done() {
+            pendingSubmissions.remove(submission, this);
+            final Caller[] waiting;
+            synchronized (this) {
+                closed = true;
+                waiting = callers.toArray(new Caller[callers.size()]);
+            }
+            for (Caller caller : waiting) {
+                if (isCancelled()) {
+                    caller.abandon();
+                } else if (exception != null) {
+                    caller.fail(exception);
+                } else {
+                    caller.complete(result);
+                }
+            }
+        }
+    }
+
+    private static final Callable<Value> NOT_RUN = new Callable<Value>() {
+        public Value call() {
+            throw new IllegalStateException("the future of a caller is completed by its execution");
+        }
+    };
+
+    /**
+     * The future returned to one caller of a shared {@link Execution}.
+     */
+    private static final class Caller extends FutureTask<Value> {
+        private final Execution execution;
+
+        Caller(Execution execution) {
+            super(NOT_RUN);
+            this.execution = execution;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (super.cancel(false)) {
+                execution.leave();
+                return true;
+            }
+            return false;
+        }
+
+        void complete(Value value) {
+            set(value);
+        }
+
+        void fail(Throwable throwable) {
+            setException(throwable);
+        }
+
+        void abandon() {
+            super.cancel(false);
+        }
+    }
+
+    /**
+     * Submits the execution of a given method with the given arguments, to be run asynchronously by one of
+     * {@link #ASYNC_THREADS} threads. If an execution of the same method with equal arguments has been submitted and
+     * has not yet completed, no new execution is submitted and the caller shares the result of the pending one.
+     * <p>
+     * {@linkplain Future#cancel(boolean) Cancelling} the returned future only affects this caller. Once every caller
+     * sharing an execution has cancelled its future, the execution is {@linkplain ExecutionBudget#cancel() cancelled},
+     * stopping the interpreter at its next backward branch or call if it is already running.
+     *
+     * @return the future result of the execution. If the method throws an exception, {@link Future#get()} throws an
+     *         {@link ExecutionException} whose cause is the {@link TeleInterpreterException}.
+     */
+    public Future<Value> submit(final ClassMethodActor classMethodActor, final Value... args) {
+        final Submission submission = new Submission(classMethodActor, args);
+        while (true) {
+            final Execution pending = pendingSubmissions.get(submission);
+            if (pending != null) {
+                final Caller caller = pending.join();
+                if (caller != null) {
+                    return caller;
+                }
+                pendingSubmissions.remove(submission, pending);
+                continue;
+            }
+            final ExecutionBudget budget = new ExecutionBudget(ExecutionBudget.UNLIMITED, ExecutionBudget.UNLIMITED, ExecutionBudget.UNLIMITED);
+            final Execution execution = new Execution(submission, budget, new Callable<Value>() {
+                public Value call() throws TeleInterpreterException {
+                    try {
+                        return execute(budget, null, classMethodActor, args);
+                    } catch (TeleInterpreterException teleInterpreterException) {
+                        // The exception is the cause of the ExecutionException thrown by the future
+                        teleInterpreterException.materializeStackTrace();
+                        throw teleInterpreterException;
+                    }
+                }
+            });
+            // Join before the execution can run so that it cannot complete without this caller
+            final Caller caller = execution.join();
+            if (pendingSubmissions.putIfAbsent(submission, execution) == null) {
+                executor().execute(execution);
+                return caller;
+            }
+        }
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(ASYNC_THREADS, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "TeleInterpreter-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Cancels all pending {@linkplain #submit(ClassMethodActor, Value...) submitted} executions and stops the threads
+     * running them. Executions submitted afterwards are run by new threads.
+     */
+    public synchronized void shutdown() {
+        for (Execution pending : pendingSubmissions.values()) {
+            pending.cancel(true);
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Performs several evaluations in separate threads of a single machine taken from this pool.
+     *
+     * @see TeleInterpreter#execute(TeleVM, Evaluation...)
+     */
+    void execute(Evaluation... evaluations) {
+        final Machine machine = acquire();
+        try {
+            new TeleInterpreter(teleVM, dispatch).run(machine, evaluations);
+        } finally {
+            release(machine);
+        }
+    }
+
+    /**
+     * The pools used by the static {@code execute} methods of {@link TeleInterpreter}, so that the caches retained by
+     * their machines survive from one execution to the next. A pool is only softly reachable from here so that it, and
+     * the VM it refers to, can be reclaimed once the VM is no longer used elsewhere.
+     */
+    private static final Map<TeleVM, SoftReference<TeleInterpreterPool>> sharedPools = new WeakHashMap<TeleVM, SoftReference<TeleInterpreterPool>>();
+
+    /**
+     * Gets the pool shared by the static {@code execute} methods of {@link TeleInterpreter} for a given VM.
+     *
+     * @param teleVM the remote VM or {@code null} to execute methods in the host VM
+     */
+    static synchronized TeleInterpreterPool shared(TeleVM teleVM) {
+        final SoftReference<TeleInterpreterPool> reference = sharedPools.get(teleVM);
+        TeleInterpreterPool pool = reference == null ? null : reference.get();
+        if (pool == null) {
+            pool = new TeleInterpreterPool(teleVM);
+            sharedPools.put(teleVM, new SoftReference<TeleInterpreterPool>(pool));
+        }
+        return pool;
+    }
+
+    private Machine acquire() {
+        final Machine machine = idleMachines.poll();
+        return machine == null ? new Machine(teleVM) : machine;
+    }
+
+    private void release(Machine machine) {
+        machine.reset();
+        // The machine is simply dropped if the pool is full
+        idleMachines.offer(machine);
+    }
+
+    /**
+     * Discards all idle machines along with their caches.
+     */
+    public void clear() {
+        idleMachines.clear();
+    }
+}